@@ -0,0 +1,73 @@
+package interpreter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import parser.DfaTokenizer;
+import parser.MyParser;
+import parser.ParserException;
+import parser.ast.Prog;
+import visitors.evaluation.Eval;
+import visitors.resolution.Resolver;
+
+//Cost of the in operator of Eval as the set grows, for sets of ints, strings, pairs and sets
+//usage: InBenchmark [lookups], default is 1000000; the time per lookup should not depend on the size
+//kept in the bench source root, out of the interpreter
+public class InBenchmark {
+
+	static final int[] SIZES = { 10, 1000, 100000 };
+	static final String[] KINDS = { "int", "string", "pair", "set" };
+
+	//the i-th element of a set of the given kind, as L++ source
+	static String element(String kind, String i) {
+		switch (kind) {
+		case "int":
+			return i;
+		case "string":
+			return "\"k\"^\"" + i + "\"";
+		case "pair":
+			return "[" + i + ", " + i + "]";
+		default:
+			return "{" + i + ", 0}";
+		}
+	}
+
+	//a literal set of size elements, then lookups of which about half hit
+	static String program(String kind, int size, int lookups) {
+		StringBuilder set = new StringBuilder();
+		for (int i = 0; i < size; i++)
+			set.append(i > 0 ? ", " : "").append(element(kind, Integer.toString(2 * i)));
+		String key = kind.equals("string") ? "\"k\"^\"" + 2 * (size / 2) + "\"" : element(kind, "i");
+		return "let s={" + set + "}; let i=0; let n=0;\n"
+				+ "while(!(i==" + lookups + ")){ if(" + key + " in s){ n=n+1 }; i=i+1 };\n"
+				+ "print n";
+	}
+
+	//best of 5 runs, in nanoseconds per lookup
+	static double time(String source, int lookups) throws ParserException, IOException {
+		Prog prog = new Resolver().resolve(new MyParser(new DfaTokenizer(new StringReader(source))).parseProg(false));
+		long best = Long.MAX_VALUE;
+		for (int run = 0; run < 5; run++) {
+			long start = System.nanoTime();
+			prog.accept(new Eval(new PrintWriter(new StringWriter())));
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return (double) best / lookups;
+	}
+
+	public static void main(String[] args) throws ParserException, IOException {
+		int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		System.out.printf("%-8s", "size");
+		for (String kind : KINDS)
+			System.out.printf("%12s", kind);
+		System.out.println("   (ns per lookup)");
+		for (int size : SIZES) {
+			System.out.printf("%-8d", size);
+			for (String kind : KINDS)
+				System.out.printf("%12.1f", time(program(kind, size, lookups), lookups));
+			System.out.println();
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package environments;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+
+import parser.ast.Ident;
+import parser.ast.ResolvedIdent;
+
+/*
+ * environment for resolved programs: each scope is a frame, an array indexed
+ * by the slots assigned by visitors.resolution.Resolver, and a variable is
+ * found with two indexings, frames[top - depth][slot], without any search
+ */
+
+public class FrameEnvironment<T> implements Environment<T> {
+	private static final Object[] EMPTY_FRAME = {};
+
+	private Object[][] frames = new Object[16][];
+	private int top; // index of the most nested frame
+
+	/* create an environment with just one empty scope */
+	public FrameEnvironment() {
+		frames[0] = EMPTY_FRAME;
+	}
+
+	/*
+	 * frames are allocated by the first declaration and then pooled: the frame
+	 * of an exited scope is cleared and reused by the next scope at the same
+	 * level, so that the body of a loop allocates its frame only once
+	 */
+	@Override
+	public void enterScope() {
+		if (++top == frames.length) {
+			Object[][] larger = new Object[2 * frames.length][];
+			System.arraycopy(frames, 0, larger, 0, frames.length);
+			frames = larger;
+		}
+		if (frames[top] == null)
+			frames[top] = EMPTY_FRAME;
+	}
+
+	@Override
+	public void exitScope() {
+		Arrays.fill(frames[top--], null);
+	}
+
+	/* throws EnvironmentException if id is not in scope */
+	private static ResolvedIdent resolved(Ident id) {
+		ResolvedIdent resolved = (ResolvedIdent) id;
+		if (resolved.getDepth() == ResolvedIdent.UNDECLARED)
+			throw new EnvironmentException("Undeclared variable " + id.getName());
+		return resolved;
+	}
+
+	@Override
+	public T lookup(Ident id) {
+		ResolvedIdent resolved = resolved(id);
+		return lookup(resolved.getDepth(), resolved.getSlot());
+	}
+
+	@Override
+	public T dec(Ident id, T info) {
+		return dec(resolved(id).getSlot(), info);
+	}
+
+	@Override
+	public T update(Ident id, T info) {
+		ResolvedIdent resolved = resolved(id);
+		return update(resolved.getDepth(), resolved.getSlot(), info);
+	}
+
+	/* accessors by address, for code which has already resolved the identifiers */
+
+	@SuppressWarnings("unchecked")
+	public T lookup(int depth, int slot) {
+		return (T) frames[top - depth][slot];
+	}
+
+	@SuppressWarnings("unchecked")
+	public T dec(int slot, T info) {
+		Object[] frame = frames[top];
+		if (slot >= frame.length) {
+			Object[] larger = new Object[Math.max(slot + 1, 2 * frame.length)];
+			System.arraycopy(frame, 0, larger, 0, frame.length);
+			frames[top] = frame = larger;
+		}
+		T previous = (T) frame[slot];
+		frame[slot] = requireNonNull(info);
+		return previous;
+	}
+
+	@SuppressWarnings("unchecked")
+	public T update(int depth, int slot, T info) {
+		Object[] frame = frames[top - depth];
+		T previous = (T) frame[slot];
+		frame[slot] = requireNonNull(info);
+		return previous;
+	}
+
+}
@@ -0,0 +1,207 @@
+package interpreter;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import parser.ast.Prog;
+import visitors.serialization.AstReader;
+import visitors.serialization.AstWriter;
+
+/*
+ * cache of the parsed programs; the entry of a source file stores a hash of
+ * the source, the verdict of the type checker and the AST in binary form,
+ * and it is used only if the source has not changed since it was written;
+ * entries are kept in ~/.lpp/cache, one per source path
+ *
+ * entries are also discarded when the format changes: the tags of the AST
+ * are identified by AstWriter.FORMAT, and VERSION is raised by hand for any
+ * other change, such as the order of the children or what is stored; the
+ * directory is bounded by removing the entries unused for MAX_AGE and then
+ * the least recently used ones beyond MAX_ENTRIES, with the modification
+ * time of an entry as its time of use
+ */
+
+public class AstCache {
+	private static final int MAGIC = 0x4C505041; // "LPPA"
+	private static final int VERSION = 2; // 2: parsed programs rather than resolved ones
+	private static final int MAX_ENTRIES = 256;
+	private static final long MAX_AGE = TimeUnit.DAYS.toMillis(30);
+	private static final long DAY = TimeUnit.DAYS.toMillis(1);
+	private static final long REGION_SIZE = 1 << 30;
+
+	public enum Verdict {
+		UNCHECKED, OK, ERROR
+	}
+
+	private final Path entry;
+	private final long hash;
+	private Verdict verdict = Verdict.UNCHECKED;
+	private String error; // message of the static error
+
+	public AstCache(Path source) throws IOException {
+		source = source.toAbsolutePath().normalize();
+		hash = hash(source);
+		Path dir = Paths.get(System.getProperty("user.home"), ".lpp", "cache");
+		entry = dir.resolve(name(source.toString()));
+	}
+
+	private static long mix(long hash, long word) {
+		hash ^= word * 0xC2B2AE3D27D4EB4FL;
+		return Long.rotateLeft(hash, 31) * 0x9E3779B97F4A7C15L;
+	}
+
+	/*
+	 * 64-bit hash of the content, read 8 bytes at a time from the mapping;
+	 * MessageDigest is not used since the initialization of the security
+	 * providers alone takes longer than parsing a small script
+	 */
+	private static long hash(Path source) throws IOException {
+		long hash = 0;
+		try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+			long size = channel.size();
+			for (long start = 0; start < size; start += REGION_SIZE) {
+				ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, REGION_SIZE));
+				while (bytes.remaining() >= 8)
+					hash = mix(hash, bytes.getLong());
+				long tail = 0;
+				while (bytes.hasRemaining())
+					tail = tail << 8 | bytes.get() & 0xFF;
+				hash = mix(hash, tail);
+			}
+			hash ^= size;
+		}
+		hash = (hash ^ hash >>> 33) * 0xFF51AFD7ED558CCDL;
+		hash = (hash ^ hash >>> 33) * 0xC4CEB9FE1A85EC53L;
+		return hash ^ hash >>> 33;
+	}
+
+	// file name of the entry, from the path of the source
+	private static String name(String path) {
+		long hash = 0;
+		for (int i = 0; i < path.length(); i++)
+			hash = mix(hash, path.charAt(i));
+		return Long.toHexString(hash).concat(Integer.toHexString(path.hashCode())).concat(".ast");
+	}
+
+	/*
+	 * returns the cached program, or null if there is no entry for the current
+	 * source or it cannot be read
+	 */
+	public Prog load() {
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(entry)));
+			if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != AstWriter.FORMAT)
+				return null;
+			if (in.readLong() != hash)
+				return null;
+			int v = in.readUnsignedByte();
+			if (v >= Verdict.values().length)
+				return null;
+			Verdict verdict = Verdict.values()[v];
+			String error = verdict == Verdict.ERROR ? in.readUTF() : null;
+			Prog prog = new AstReader(in).readProg();
+			this.verdict = verdict;
+			this.error = error;
+			touch();
+			return prog;
+		} catch (IOException | RuntimeException e) { // missing, stale format or corrupted
+			return null;
+		}
+	}
+
+	public Verdict verdict() {
+		return verdict;
+	}
+
+	public String error() {
+		return error;
+	}
+
+	/*
+	 * writes the entry for the current source; the file is replaced
+	 * atomically, so concurrent runs never read a partial entry; failures are
+	 * ignored, the program is simply parsed again the next time
+	 */
+	public void store(Prog prog, Verdict verdict, String error) {
+		this.verdict = verdict;
+		this.error = error;
+		Path temp = null;
+		try {
+			Files.createDirectories(entry.getParent());
+			temp = Files.createTempFile(entry.getParent(), entry.getFileName().toString(), ".tmp");
+			try (OutputStream file = Files.newOutputStream(temp)) {
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file));
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(AstWriter.FORMAT);
+				out.writeLong(hash);
+				out.writeByte(verdict.ordinal());
+				if (verdict == Verdict.ERROR)
+					out.writeUTF(error);
+				new AstWriter(out).write(prog);
+				out.flush();
+			}
+			try {
+				Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+			}
+			prune(entry.getParent());
+		} catch (IOException | RuntimeException e) {
+			if (temp != null)
+				try {
+					Files.deleteIfExists(temp);
+				} catch (IOException ignored) {
+				}
+		}
+	}
+
+	// marks the entry as used, at most once a day, to spare a write to each run
+	private void touch() {
+		try {
+			long now = System.currentTimeMillis();
+			if (now - Files.getLastModifiedTime(entry).toMillis() > DAY)
+				Files.setLastModifiedTime(entry, FileTime.fromMillis(now));
+		} catch (IOException ignored) {
+		}
+	}
+
+	// removes the old entries, and the temporary files left by interrupted runs
+	private static void prune(Path dir) throws IOException {
+		List<Path> entries = new ArrayList<>();
+		Map<Path, Long> used = new HashMap<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+			for (Path file : files) {
+				entries.add(file);
+				used.put(file, Files.getLastModifiedTime(file).toMillis());
+			}
+		}
+		entries.sort((a, b) -> Long.compare(used.get(b), used.get(a))); // most recently used first
+		long now = System.currentTimeMillis();
+		int kept = 0;
+		for (Path file : entries) {
+			boolean tmp = file.getFileName().toString().endsWith(".tmp");
+			if (tmp ? now - used.get(file) > DAY : ++kept > MAX_ENTRIES || now - used.get(file) > MAX_AGE)
+				Files.deleteIfExists(file);
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package interpreter;
+import parser.DfaTokenizer;
+import parser.MappedFileReader;
+import parser.MyParser;
+import parser.ParserException;
+import parser.StreamTokenizer;
+import parser.Tokenizer;
+import parser.ast.Prog;
+import visitors.jit.JarWriter;
+import visitors.jit.JitCompiler;
+import visitors.jit.JitException;
+import visitors.resolution.Resolver;
+import visitors.typechecking.TypeCheck;
+import visitors.typechecking.TypecheckerException;
+
+import java.io.*;
+import java.nio.file.Paths;
+
+
+//Ahead-of-time compiler for L++: type checks a program and writes a runnable jar
+//usage: Lppc -i file [-o jar] [-regex], by default the jar is named after the file
+//the jar holds the class Main and the runtime classes it uses, run it with java -jar
+public class Lppc {
+
+	static final String MAIN_CLASS = "Main";
+
+	public static void main(String[] args) {
+		String filein = null, fileout = null;
+		Boolean regex=false;
+		for(int i=0; i<args.length; i++) {
+			switch (args[i]) {
+			case "-i":
+				i++;
+				filein=args[i];
+				break;
+
+			case "-o":
+				i++;
+				fileout=args[i];
+				break;
+
+			case "-regex":
+				regex=true;
+				break;
+
+			default:
+				throw new IllegalArgumentException();
+			}
+		}
+		if(filein==null)
+			throw new IllegalArgumentException();
+		if(fileout==null)
+			fileout=filein.replaceFirst("\\.[^./\\\\]*$", "")+".jar";
+
+		try {
+			//Parsing, Resolution and Type-Checking as in Main, the program must be well typed
+			Reader read=new MappedFileReader(Paths.get(filein));
+			Tokenizer st=regex ? new StreamTokenizer(read) : new DfaTokenizer(read);
+			Prog prog=new MyParser(st).parseProg(false);
+			Prog resolved=new Resolver().resolve(prog);
+			TypeCheck checker=new TypeCheck();
+			resolved.accept(checker);
+
+			//Compilation : the class of the program, then the jar
+			byte[] main=new JitCompiler(checker.getTypes()).compileClass(resolved, MAIN_CLASS);
+			try (OutputStream out=new FileOutputStream(fileout)) {
+				JarWriter.write(out, MAIN_CLASS, main);
+			}
+			return;
+		}
+
+		//Exceptions, the exit status is 1
+		catch (ParserException pE) {
+			System.err.println("Syntax error: " + pE.getMessage());
+		}
+		catch (IOException ioE) {
+			System.err.println("Input error: " + ioE.getMessage());
+		}
+		catch (TypecheckerException tcE) {
+			System.err.println("Static error: " + tcE.getMessage());
+		}
+		catch (JitException jE) {
+			System.err.println("Cannot compile: " + jE.getMessage());
+		}
+		System.exit(1);
+	}
+}
@@ -1,27 +1,41 @@
 package interpreter;
+import interpreter.AstCache.Verdict;
+import parser.DfaTokenizer;
+import parser.MappedFileReader;
 import parser.MyParser;
 import parser.ParserException;
 import parser.StreamTokenizer;
+import parser.Tokenizer;
 import parser.ast.Prog;
+import visitors.compilation.Code;
+import visitors.compilation.Compiler;
+import visitors.compilation.TieredEval;
 import visitors.evaluation.Eval;
 import visitors.evaluation.EvaluatorException;
+import visitors.evaluation.ValueStore;
+import visitors.jit.JitCompiler;
+import visitors.jit.JitException;
+import visitors.resolution.Resolver;
 import visitors.typechecking.TypeCheck;
+import visitors.vm.VmCompiler;
 import visitors.typechecking.TypecheckerException;
 
 import static java.lang.System.err;
 
 import java.io.*;
+import java.nio.file.Paths;
 
 
 //Simple Shell for L++
 public class Main {
 	
+	//files are memory-mapped, stdin is read through a Reader
 	static Reader tryOpenReader(String nameFile) {
 		if (nameFile != null) {
 			try {
-				return new FileReader(nameFile);
+				return new MappedFileReader(Paths.get(nameFile));
 			}
-			catch (FileNotFoundException e){
+			catch (IOException e){
 				System.err.println("Cannot open " + nameFile);
 			}
 		}
@@ -29,9 +43,58 @@ public class Main {
 		return new InputStreamReader(System.in);
 	}
 
+	//null if the file cannot be read, then it is parsed as usual
+	static AstCache tryOpenCache(String nameFile) {
+		try {
+			return new AstCache(Paths.get(nameFile));
+		}
+		catch (IOException e) {
+			return null;
+		}
+	}
+
+	//verdict is null if prog has just been parsed; the cache stores the parsed program, not the resolved one
+	//an entry cached UNCHECKED by a -ntc run is upgraded by the first checked run
+	//a cached OK is trusted unless the types are needed, then the checker holding them is returned
+	static TypeCheck typeCheck(Prog prog, Prog resolved, AstCache astCache, Verdict verdict, Boolean types) {
+		if(verdict==Verdict.ERROR)
+			throw new TypecheckerException(astCache.error());
+		if(verdict==Verdict.OK && !types)
+			return null;
+		TypeCheck checker=new TypeCheck();
+		try {
+			resolved.accept(checker);
+		}
+		catch (TypecheckerException tcE) {
+			if(astCache!=null)
+				astCache.store(prog, Verdict.ERROR, tcE.getMessage());
+			throw tcE;
+		}
+		if(astCache!=null && verdict!=Verdict.OK)
+			astCache.store(prog, Verdict.OK, null);
+		return checker;
+	}
+
+	//null if the program cannot be compiled to bytecode, then it runs as closures
+	static Code tryJit(Prog resolved, TypeCheck checker, PrintWriter writer) {
+		try {
+			return new JitCompiler(checker.getTypes()).compile(resolved, writer==null ? new PrintWriter(System.out, true) : writer);
+		}
+		catch (JitException jE) {
+			return null;
+		}
+	}
+
 	public static void main(String[] args) {		
 		String filein = null, fileout = null;
 		Boolean tc=true;
+		Boolean regex=false;
+		Boolean cache=true;
+		Boolean eval=false;
+		Boolean jit=false;
+		Boolean vm=false;
+		Boolean tiered=false;
+		Boolean hashcons=false;
 		if (args.length > 1) {
 			for(int i=0; i<args.length; i++) {
 				switch (args[i]) {
@@ -49,6 +112,35 @@ public class Main {
 					tc=false;
 					break;
 
+				case "-regex":
+					regex=true;
+					break;
+
+				case "-nocache":
+					cache=false;
+					break;
+
+				case "-eval":
+					eval=true;
+					break;
+
+				case "-jit":
+					jit=true;
+					break;
+
+				case "-vm":
+					vm=true;
+					break;
+
+				case "-tiered":
+					tiered=true;
+					break;
+
+				case "-hashcons":
+					eval=true;
+					hashcons=true;
+					break;
+
 				default:
 					throw new IllegalArgumentException();					
 				}
@@ -57,27 +149,49 @@ public class Main {
 		
 		//System.out.println("**DEBUG** Input:"+filein+" Output:"+fileout+" TypeCheckOption:"+tc);
 		
-		Reader read=tryOpenReader(filein);
-		StreamTokenizer st=new StreamTokenizer(read);
-		MyParser parser=new MyParser(st);
+		AstCache astCache=cache && filein!=null ? tryOpenCache(filein) : null;
 		try {
 			
-				//Parsing : Syntax 
-				Prog prog=parser.parseProg(filein==null);				
-			
-				//Type-Checking	: Static Semantics
-				if(tc) {
-					prog.accept(new TypeCheck());
+				//Parsing : Syntax, skipped if the AST of the file is cached
+				Prog prog=astCache==null ? null : astCache.load();
+				Verdict verdict=prog==null ? null : astCache.verdict();
+				if(prog==null) {
+					Reader read=tryOpenReader(filein);
+					Tokenizer st=regex ? new StreamTokenizer(read) : new DfaTokenizer(read);
+					MyParser parser=new MyParser(st);
+					prog=parser.parseProg(filein==null);
 				}
 			
-			//Evaluation : Dynamic Semantics
-			if (fileout==null)
-				prog.accept(new Eval());
-			else {
-				PrintWriter writer=new PrintWriter(fileout);
-				prog.accept(new Eval(writer));
+				//Resolution : variables are bound to the slots of their frames
+				Prog resolved=new Resolver().resolve(prog);
+			
+				//Type-Checking	: Static Semantics, the verdict is cached too
+				TypeCheck checker=null;
+				if(tc)
+					checker=typeCheck(prog, resolved, astCache, verdict, jit);
+				else if(astCache!=null && verdict==null)
+					astCache.store(prog, Verdict.UNCHECKED, null);
+			
+			//Evaluation : Dynamic Semantics, by the Eval visitor or by the code compiled from the AST
+			//-jit compiles checked programs to bytecode, unchecked ones run as closures; -vm runs the register machine
+			//-tiered starts in Eval and compiles the loops which turn out to be hot
+			//-hashcons runs Eval with one shared instance for equal strings, pairs and sets
+			PrintWriter writer=fileout==null ? null : new PrintWriter(fileout);
+			Code code=jit && !eval && checker!=null ? tryJit(resolved, checker, writer) : null;
+			if (hashcons)
+				resolved.accept(new Eval(writer==null ? new PrintWriter(System.out, true) : writer, new ValueStore()));
+			else if (eval)
+				resolved.accept(writer==null ? new Eval() : new Eval(writer));
+			else if (code!=null)
+				code.run();
+			else if (tiered)
+				resolved.accept(writer==null ? new TieredEval() : new TieredEval(writer));
+			else if (vm)
+				(writer==null ? new VmCompiler() : new VmCompiler(writer)).compile(resolved).run();
+			else
+				resolved.accept(writer==null ? new Compiler() : new Compiler(writer)).run();
+			if (writer!=null)
 				writer.close();
-			}
 		}	
 		
 		//Exceptions
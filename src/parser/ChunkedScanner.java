@@ -0,0 +1,167 @@
+package parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * scanner matching the regular expression over a fixed-size window of the
+ * stream, refilled chunk by chunk; memory is bounded by the window size,
+ * which grows only for single tokens longer than the window, not by the
+ * length of the lines
+ */
+
+public class ChunkedScanner implements Scanner {
+	private static final int WINDOW_SIZE = 8192;
+
+	private final Matcher matcher;
+	private final Reader reader;
+	private char[] window = new char[WINDOW_SIZE];
+	private CharBuffer chars = CharBuffer.wrap(window);
+	private int position; // start of the next token in window
+	private int limit; // end of the valid characters in window
+	private boolean endOfStream;
+
+	/*
+	 * bounds of the groups of the last match in window, -1 for groups which
+	 * did not match; unlike MatchResult, they do not copy the window
+	 */
+	private final int[] groups;
+
+	public ChunkedScanner(String regex, Reader reader) {
+		chars.limit(0);
+		matcher = Pattern.compile(regex).matcher(chars);
+		groups = new int[2 * (matcher.groupCount() + 1)];
+		Arrays.fill(groups, -1);
+		this.reader = reader;
+	}
+
+	/*
+	 * moves the remaining characters, and those of the last match, at the
+	 * beginning of the window, or grows it if it is full, and reads the next
+	 * chunk
+	 */
+	private void fill() throws ScannerException {
+		int keep = groups[0] >= 0 ? Math.min(groups[0], position) : position;
+		if (keep > 0) {
+			System.arraycopy(window, keep, window, 0, limit - keep);
+			limit -= keep;
+			position -= keep;
+			for (int i = 0; i < groups.length; i++)
+				if (groups[i] >= 0)
+					groups[i] -= keep;
+		} else if (limit == window.length) {
+			char[] larger = new char[2 * window.length];
+			System.arraycopy(window, 0, larger, 0, limit);
+			window = larger;
+			chars = CharBuffer.wrap(window);
+		}
+		try {
+			int read = reader.read(window, limit, window.length - limit);
+			if (read < 0)
+				endOfStream = true;
+			else
+				limit += read;
+		} catch (IOException e) {
+			throw new ScannerException(e);
+		}
+		chars.clear().limit(limit);
+		matcher.reset(chars);
+	}
+
+	/*
+	 * true if the last match attempt could change with more input; in this case
+	 * the window must be refilled and the match attempted again
+	 */
+	private boolean needsMoreInput() {
+		return matcher.hitEnd() && !endOfStream;
+	}
+
+	// the string which cannot be recognized, up to the next match or line end
+	private String skip() throws ScannerException {
+		int end;
+		while (true) {
+			matcher.region(position, limit);
+			boolean found = matcher.find();
+			if (!needsMoreInput()) {
+				end = found ? matcher.start() : limit;
+				break;
+			}
+			fill();
+		}
+		int skipped = position;
+		while (skipped < end && !isLineTerminator(window[skipped]))
+			skipped++;
+		return new String(window, position, skipped - position);
+	}
+
+	private static boolean isLineTerminator(char c) {
+		return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+	}
+
+	@Override
+	public void next() throws ScannerException {
+		if (!hasNext())
+			throw new ScannerException("Unexpected end of the stream");
+		boolean matched;
+		Arrays.fill(groups, -1);
+		while (true) {
+			matcher.region(position, limit);
+			matched = matcher.lookingAt();
+			if (!needsMoreInput())
+				break;
+			fill();
+		}
+		if (!matched)
+			throw new ScannerException("Unrecognized string " + skip());
+		for (int i = 0; i < groups.length / 2; i++) {
+			groups[2 * i] = matcher.start(i);
+			groups[2 * i + 1] = matcher.end(i);
+		}
+		position = matcher.end();
+	}
+
+	@Override
+	public boolean hasNext() throws ScannerException {
+		while (position == limit) {
+			if (endOfStream)
+				return false;
+			fill();
+		}
+		return true;
+	}
+
+	@Override
+	public String group() {
+		return group(0);
+	}
+
+	@Override
+	public String group(int group) {
+		int start = groups[2 * group];
+		return start < 0 ? null : new String(window, start, groups[2 * group + 1] - start);
+	}
+
+	@Override
+	public int start(int group) {
+		return groups[2 * group];
+	}
+
+	@Override
+	public int end(int group) {
+		return groups[2 * group + 1];
+	}
+
+	@Override
+	public void close() throws ScannerException {
+		try {
+			reader.close();
+		} catch (IOException e) {
+			throw new ScannerException(e);
+		}
+	}
+
+}
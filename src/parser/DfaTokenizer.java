@@ -0,0 +1,447 @@
+package parser;
+
+import static parser.TokenType.*;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/*
+ * hand-coded DFA lexer; recognizes exactly the same language as the regular
+ * expression of StreamTokenizer and produces the same stream of tokens, but
+ * reads the characters directly from a buffer instead of matching the whole
+ * alternation and probing its groups one by one
+ */
+
+public class DfaTokenizer implements Tokenizer {
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final String[] keywords = { "print", "let", "false", "true", "if", "else", "fst", "snd", "in",
+			"while" };
+	private static final TokenType[] keywordTypes = { PRINT, LET, BOOL, BOOL, IF, ELSE, FST, SND, IN, WHILE };
+
+	private final Reader reader;
+	private char[] buffer = new char[BUFFER_SIZE];
+	private int start; // start of the current token in buffer
+	private int limit; // end of the valid characters in buffer
+	private boolean endOfStream;
+
+	private boolean hasNext = true; // any stream contains at least the EOF
+
+	// token: span of the lexeme in buffer, text created on demand
+	private TokenType tokenType;
+	private int tokenStart;
+	private int tokenLength;
+	private final CharSequence tokenChars = new TokenChars();
+	private String tokenString;
+	private int intValue;
+	private boolean boolValue;
+	private String stringValue;
+
+	public DfaTokenizer(Reader reader) {
+		this.reader = reader;
+	}
+
+	/*
+	 * returns the character at offset k from the start of the current token, or
+	 * -1 if the stream ends before; the buffer is compacted (or grown, for
+	 * tokens longer than the buffer) when k goes beyond the valid characters
+	 */
+	private int peek(int k) throws TokenizerException {
+		while (start + k >= limit) {
+			if (endOfStream)
+				return -1;
+			fill();
+		}
+		return buffer[start + k];
+	}
+
+	private void fill() throws TokenizerException {
+		if (start > 0) {
+			System.arraycopy(buffer, start, buffer, 0, limit - start);
+			limit -= start;
+			start = 0;
+		} else if (limit == buffer.length) {
+			char[] larger = new char[2 * buffer.length];
+			System.arraycopy(buffer, 0, larger, 0, limit);
+			buffer = larger;
+		}
+		try {
+			int read = reader.read(buffer, limit, buffer.length - limit);
+			if (read < 0)
+				endOfStream = true;
+			else
+				limit += read;
+		} catch (IOException e) {
+			throw new TokenizerException(new ScannerException(e));
+		}
+	}
+
+	/*** character classes ***/
+
+	private static boolean isLetter(int c) {
+		return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+	}
+
+	private static boolean isDigit(int c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isHexDigit(int c) {
+		return isDigit(c) || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F';
+	}
+
+	// \s of java.util.regex
+	private static boolean isSpace(int c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	// characters matched by . of java.util.regex
+	private static boolean isNotLineTerminator(int c) {
+		return c >= 0 && c != '\n' && c != '\r' && c != '\u0085' && c != '\u2028' && c != '\u2029';
+	}
+
+	// characters allowed in string literals without escape; lines never contain
+	// '\n' or '\r'
+	private static boolean isStringChar(int c) {
+		return isLetter(c) || isDigit(c) || c == '_' || c == ' ' || c == '\t' || c == '\u000B' || c == '\f'
+				|| c == '!' || c >= '#' && c <= '@' || c == '[' || c == ']' || c == '^' || c == '\''
+				|| c >= '{' && c <= '~';
+	}
+
+	/*** states of the automaton; each returns the length of the lexeme ***/
+
+	private int skipSpaces() throws TokenizerException {
+		int k = 1;
+		while (isSpace(peek(k)))
+			k++;
+		return k;
+	}
+
+	private int skipComment() throws TokenizerException {
+		int k = 2;
+		while (isNotLineTerminator(peek(k)))
+			k++;
+		return k;
+	}
+
+	private int scanIdent() throws TokenizerException {
+		int k = 1;
+		for (int c = peek(k); isLetter(c) || isDigit(c); c = peek(++k))
+			;
+		return k;
+	}
+
+	// returns the type of the keyword of the given length at start, IDENT if
+	// there is none
+	private TokenType keyword(int length) {
+		search: for (int i = 0; i < keywords.length; i++) {
+			String keyword = keywords[i];
+			if (keyword.length() != length)
+				continue;
+			for (int j = 0; j < length; j++)
+				if (keyword.charAt(j) != buffer[start + j])
+					continue search;
+			return keywordTypes[i];
+		}
+		return IDENT;
+	}
+
+	private int scanNum(int first) throws TokenizerException {
+		int k = 1;
+		if (first == '0') {
+			int x = peek(1);
+			if ((x == 'x' || x == 'X') && isHexDigit(peek(2))) {
+				k = 3;
+				while (isHexDigit(peek(k)))
+					k++;
+			}
+			return k;
+		}
+		while (isDigit(peek(k)))
+			k++;
+		return k;
+	}
+
+	// returns 0 if the literal is not well-formed
+	private int scanString() throws TokenizerException {
+		int k = 1;
+		while (true) {
+			int c = peek(k);
+			if (c == '"')
+				return k + 1;
+			if (c == '\\') {
+				int e = peek(k + 1);
+				if (e != '\\' && e != '"')
+					return 0;
+				k += 2;
+			} else if (isStringChar(c))
+				k++;
+			else
+				return 0;
+		}
+	}
+
+	/*
+	 * checks whether a token may start at offset k; used to delimit
+	 * unrecognized strings as StreamScanner does
+	 */
+	private boolean canStartToken(int k) throws TokenizerException {
+		int c = peek(k);
+		switch (c) {
+		case '+': case '*': case '=': case '(': case ')': case '[': case ']': case ';': case ',':
+		case '{': case '}': case '-': case '!': case '"': case '^': case '#': case '|':
+			return true;
+		case '&':
+			return peek(k + 1) == '&';
+		case '\\':
+			c = peek(k + 1);
+			return c == '\\' || c == '/';
+		case '/':
+			c = peek(k + 1);
+			return c == '/' || c == '\\';
+		default:
+			return isSpace(c) || isLetter(c) || isDigit(c);
+		}
+	}
+
+	/*
+	 * the reported string extends up to the next character where a token may
+	 * start, but like StreamScanner.skip() it stops at the first line terminator
+	 */
+	private TokenizerException unrecognized() throws TokenizerException {
+		int k = 0;
+		while (isNotLineTerminator(peek(k)) && (k == 0 || !canStartToken(k)))
+			k++;
+		return new TokenizerException(new ScannerException("Unrecognized string " + lexeme(k)));
+	}
+
+	private String lexeme(int length) {
+		return new String(buffer, start, length);
+	}
+
+	private TokenType symbol(TokenType type, int length) {
+		tokenLength = length;
+		return type;
+	}
+
+	// value of the numeral at start, computed without creating its text
+	private int numValue() {
+		int radix = 10, i = 0;
+		if (tokenLength > 2 && (buffer[start + 1] == 'x' || buffer[start + 1] == 'X')) {
+			radix = 16;
+			i = 2;
+		}
+		long value = 0;
+		for (; i < tokenLength; i++) {
+			value = value * radix + Character.digit(buffer[start + i], radix);
+			if (value > Integer.MAX_VALUE)
+				return Integer.decode(lexeme(tokenLength)); // throws NumberFormatException
+		}
+		return (int) value;
+	}
+
+	/*
+	 * recognizes the next token starting from start and returns its type; skipped
+	 * characters are consumed, otherwise start is left unchanged and the length
+	 * of the lexeme is stored in tokenLength
+	 */
+	private TokenType scan() throws TokenizerException {
+		int c = peek(0);
+		if (isSpace(c)) {
+			int length = skipSpaces(); // may move start
+			start += length;
+			return SKIP;
+		}
+		if (isLetter(c)) {
+			tokenLength = scanIdent();
+			TokenType keyword = keyword(tokenLength);
+			if (keyword == BOOL)
+				boolValue = buffer[start] == 't';
+			return keyword;
+		}
+		if (isDigit(c)) {
+			tokenLength = scanNum(c);
+			intValue = numValue();
+			return NUM;
+		}
+		switch (c) {
+		case '"': {
+			tokenLength = scanString();
+			if (tokenLength == 0)
+				throw new TokenizerException("Unrecognized string:" + "\\\"");
+			return STRINGLIT;
+		}
+		case '/':
+			switch (peek(1)) {
+			case '/':
+				int length = skipComment(); // may move start
+				start += length;
+				return SKIP;
+			case '\\':
+				return symbol(INTERSECT, 2);
+			}
+			break;
+		case '\\':
+			switch (peek(1)) {
+			case '/':
+				return symbol(UNION, 2);
+			case '\\':
+				throw new TokenizerException("Unrecognized string:" + "\\\\");
+			}
+			break;
+		case '=':
+			return peek(1) == '=' ? symbol(EQ, 2) : symbol(ASSIGN, 1);
+		case '&':
+			if (peek(1) == '&')
+				return symbol(AND, 2);
+			break;
+		case '|':
+			throw new TokenizerException("Unrecognized string:" + "|");
+		case '+':
+			return symbol(PLUS, 1);
+		case '*':
+			return symbol(TIMES, 1);
+		case '(':
+			return symbol(OPEN_PAR, 1);
+		case ')':
+			return symbol(CLOSE_PAR, 1);
+		case '[':
+			return symbol(OPEN_PAIR, 1);
+		case ']':
+			return symbol(CLOSE_PAIR, 1);
+		case ';':
+			return symbol(STMT_SEP, 1);
+		case ',':
+			return symbol(EXP_SEP, 1);
+		case '{':
+			return symbol(OPEN_BRACE, 1);
+		case '}':
+			return symbol(CLOSE_BRACE, 1);
+		case '-':
+			return symbol(MINUS, 1);
+		case '!':
+			return symbol(NOT, 1);
+		case '^':
+			return symbol(CONCAT, 1);
+		case '#':
+			return symbol(DIM, 1);
+		}
+		throw unrecognized();
+	}
+
+	/*** OVERRIDE ***/
+
+	@Override
+	public TokenType next() throws TokenizerException {
+		tokenString = null;
+		stringValue = null;
+		do {
+			tokenType = null;
+			tokenLength = 0;
+			if (peek(0) < 0) {
+				if (hasNext) {
+					hasNext = false;
+					tokenStart = start;
+					return tokenType = EOF;
+				}
+				throw new TokenizerException(new ScannerException("Unexpected end of the stream"));
+			}
+			tokenType = scan();
+		} while (tokenType == SKIP);
+		tokenStart = start;
+		start += tokenLength;
+		return tokenType;
+	}
+
+	/*
+	 * view of the lexeme of the current token in buffer; no characters are
+	 * copied, so it is valid only until the next call of next()
+	 */
+	private class TokenChars implements CharSequence {
+		@Override
+		public int length() {
+			return tokenLength;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return buffer[tokenStart + index];
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return toString().substring(start, end);
+		}
+
+		@Override
+		public String toString() {
+			return new String(buffer, tokenStart, tokenLength);
+		}
+	}
+
+	private void checkValidToken() {
+		if (tokenType == null)
+			throw new IllegalStateException();
+	}
+
+	private void checkValidToken(TokenType ttype) {
+		if (tokenType != ttype)
+			throw new IllegalStateException();
+	}
+
+	@Override
+	public String tokenString() {
+		checkValidToken();
+		if (tokenString == null)
+			tokenString = tokenChars.toString();
+		return tokenString;
+	}
+
+	@Override
+	public CharSequence tokenChars() {
+		checkValidToken();
+		return tokenChars;
+	}
+
+	@Override
+	public boolean boolValue() {
+		checkValidToken(BOOL);
+		return boolValue;
+	}
+
+	@Override
+	public String stringValue() {
+		checkValidToken(STRINGLIT);
+		if (stringValue == null)
+			stringValue = new String(buffer, tokenStart + 1, tokenLength - 2).replace("\\\"", "\"")
+					.replace("\\\\", "\\");
+		return stringValue;
+	}
+
+	@Override
+	public int intValue() {
+		checkValidToken(NUM);
+		return intValue;
+	}
+
+	@Override
+	public TokenType tokenType() {
+		checkValidToken();
+		return tokenType;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return hasNext;
+	}
+
+	@Override
+	public void close() throws TokenizerException {
+		try {
+			reader.close();
+		} catch (IOException e) {
+			throw new TokenizerException(new ScannerException(e));
+		}
+	}
+
+}
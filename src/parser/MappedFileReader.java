@@ -0,0 +1,102 @@
+package parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * reader of a memory-mapped file; bytes are decoded straight from the mapping
+ * into the buffer of the caller, so that the tokenizers read the file without
+ * intermediate copies and the OS page cache does the buffering; files larger
+ * than a mapping are mapped region by region
+ */
+
+public class MappedFileReader extends Reader {
+	private static final long REGION_SIZE = 1 << 30;
+
+	private final FileChannel channel;
+	private final long size;
+	private final CharsetDecoder decoder;
+	private ByteBuffer bytes; // current region
+	private long regionStart; // position of the current region in the file
+	private boolean finished; // all bytes decoded and the decoder flushed
+
+	// second half of a surrogate pair which did not fit the buffer of the caller
+	private final CharBuffer spare = CharBuffer.allocate(2);
+	private int pending = -1;
+
+	public MappedFileReader(Path path, Charset charset) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		size = channel.size();
+		decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		map(0);
+	}
+
+	public MappedFileReader(Path path) throws IOException {
+		this(path, Charset.defaultCharset());
+	}
+
+	private void map(long start) throws IOException {
+		regionStart = start;
+		bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, REGION_SIZE));
+	}
+
+	/*
+	 * decodes as many characters as possible into out; returns false if out
+	 * is full
+	 */
+	private boolean decode(CharBuffer out) throws IOException {
+		boolean endOfInput = regionStart + bytes.limit() == size;
+		CoderResult result = decoder.decode(bytes, out, endOfInput);
+		if (result.isError())
+			result.throwException();
+		if (result.isOverflow())
+			return false;
+		if (!endOfInput) // a character may straddle the regions
+			map(regionStart + bytes.position());
+		else if (decoder.flush(out).isOverflow())
+			return false;
+		else
+			finished = true;
+		return true;
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (len == 0)
+			return 0;
+		CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+		if (pending >= 0) {
+			out.put((char) pending);
+			pending = -1;
+		}
+		while (!finished && decode(out))
+			;
+		if (out.position() == off && !finished) { // room for half a pair only
+			spare.clear();
+			while (spare.position() == 0 && !finished && decode(spare))
+				;
+			spare.flip();
+			if (spare.hasRemaining())
+				out.put(spare.get());
+			if (spare.hasRemaining())
+				pending = spare.get();
+		}
+		return out.position() == off ? -1 : out.position() - off;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+}
@@ -4,12 +4,17 @@ import static java.util.Objects.requireNonNull;
 import static parser.TokenType.*;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BinaryOperator;
+import java.util.function.UnaryOperator;
 
 import parser.ast.*;
 
 public class MyParser implements Parser {
 
 	private final Tokenizer tokenizer;
+	private final SymbolTable symbols = new SymbolTable();
 
 	private void tryNext() throws ParserException {
 		try {
@@ -49,12 +54,13 @@ public class MyParser implements Parser {
 	}
 
 	private StmtSeq parseStmtSeq() throws ParserException {
-		Stmt stmt = parseStmt();
-		if (tokenizer.tokenType() == STMT_SEP) {
+		List<Stmt> stmts = new ArrayList<>();
+		stmts.add(parseStmt());
+		while (tokenizer.tokenType() == STMT_SEP) {
 			tryNext();
-			return new MoreStmt(stmt, parseStmtSeq());
+			stmts.add(parseStmt());
 		}
-		return new SingleStmt(stmt);
+		return new StmtList(stmts);
 	}
 
 	private Stmt parseStmt() throws ParserException {
@@ -127,135 +133,105 @@ public class MyParser implements Parser {
 	}
 
 	private ExpSeq parseExpSeq() throws ParserException {
-		Exp exp = parseExp();
-		if (tokenizer.tokenType() == EXP_SEP) {
+		List<Exp> exps = new ArrayList<>();
+		exps.add(parseExp());
+		while (tokenizer.tokenType() == EXP_SEP) {
 			tryNext();
-			return new MoreExp(exp, parseExpSeq());
+			exps.add(parseExp());
 		}
-		return new SingleExp(exp);
+		return new ExpList(exps);
 	}
 
-	private Exp parseExp() throws ParserException {
-		Exp exp = parseEq();
-		while (tokenizer.tokenType() == AND) {
-			tryNext();
-			exp = new And(exp, parseEq());
-		}
-		return exp;
-	}
-	
-	
-	private Exp parseEq() throws ParserException {
-		Exp exp = parseIn();
-		while (tokenizer.tokenType() == EQ) {
-			tryNext();
-			exp = new Eq(exp, parseIn());
-		}
-		return exp;
-	}
+	/*
+	 * operator-precedence (Pratt) parsing of expressions; from the lowest to the
+	 * highest precedence: && == in \/ /\ ^ + * and then the prefix operators #
+	 * - ! fst snd, which apply to atoms; all binary operators are left
+	 * associative. A new operator only needs an entry in the tables below.
+	 */
 
+	private static class Operator<F> {
+		final int precedence;
+		final F node;
 
-	//L++
-	private Exp parseIn() throws ParserException{
-		Exp exp=parseUnion();
-		while (tokenizer.tokenType() == IN) {
-			tryNext();
-			exp=new In(exp,parseUnion());
+		Operator(int precedence, F node) {
+			this.precedence = precedence;
+			this.node = node;
 		}
-		return exp;
 	}
-	
-	private Exp parseUnion() throws ParserException {
-		Exp exp = parseIntersect();
-		while (tokenizer.tokenType() == UNION) {
-			tryNext();
-			exp = new Union(exp, parseIntersect());
-		}
-		return exp;
+
+	private static final int PREFIX_PRECEDENCE = 9;
+
+	// tables indexed by the ordinal of the token type, created raw since arrays of generic types cannot be
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static final Operator<BinaryOperator<Exp>>[] binaryOperators = new Operator[TokenType.values().length];
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static final Operator<UnaryOperator<Exp>>[] prefixOperators = new Operator[TokenType.values().length];
+
+	private static void binary(TokenType type, int precedence, BinaryOperator<Exp> node) {
+		binaryOperators[type.ordinal()] = new Operator<>(precedence, node);
 	}
-	
-	private Exp parseIntersect() throws ParserException {
-		Exp exp = parseConcat();
-		while (tokenizer.tokenType() == INTERSECT) {
-			tryNext();
-			exp = new Intersect(exp, parseConcat());
-		}
-		return exp;
+
+	private static void prefix(TokenType type, UnaryOperator<Exp> node) {
+		prefixOperators[type.ordinal()] = new Operator<>(PREFIX_PRECEDENCE, node);
 	}
 
-	private Exp parseConcat() throws ParserException{
-		Exp exp=parseAdd();
-		while (tokenizer.tokenType() == CONCAT) {
-			tryNext();
-			exp = new Concat(exp, parseAdd());
-		}
-		return exp;
+	static {
+		binary(AND, 1, And::new);
+		binary(EQ, 2, Eq::new);
+		binary(IN, 3, In::new); // L++
+		binary(UNION, 4, Union::new); // L++
+		binary(INTERSECT, 5, Intersect::new); // L++
+		binary(CONCAT, 6, Concat::new); // L++
+		binary(PLUS, 7, Add::new);
+		binary(TIMES, 8, Mul::new);
+
+		prefix(DIM, Cardinality::new); // L++
+		prefix(MINUS, Sign::new);
+		prefix(NOT, Not::new);
+		prefix(FST, Fst::new);
+		prefix(SND, Snd::new);
 	}
-	
-	private Exp parseCardinality() throws ParserException{
-		if(tokenizer.tokenType()==DIM) {
-			consume(DIM);
-			return new Cardinality(parseAtom());
-		}
-		return parseAtom();
-	}	
-	// L++ end
-	
-	
-	private Exp parseAdd() throws ParserException {
-		Exp exp = parseMul();
-		while (tokenizer.tokenType() == PLUS) {
-			tryNext();
-			exp = new Add(exp, parseMul());
-		}
-		return exp;
+
+	private Exp parseExp() throws ParserException {
+		return parseExp(0);
 	}
-	
-	private Exp parseMul() throws ParserException {
-		Exp exp = parseCardinality();
-		while (tokenizer.tokenType() == TIMES) {
+
+	// parses an expression whose binary operators have precedence > min
+	private Exp parseExp(int min) throws ParserException {
+		Exp exp = parseAtom();
+		Operator<BinaryOperator<Exp>> op;
+		while ((op = binaryOperators[tokenizer.tokenType().ordinal()]) != null && op.precedence > min) {
 			tryNext();
-			exp = new Mul(exp, parseCardinality());
+			exp = op.node.apply(exp, parseExp(op.precedence));
 		}
 		return exp;
 	}
-	
-	
-	
+
 	private Exp parseAtom() throws ParserException {
 		switch (tokenizer.tokenType()) {
-		default:
-			unexpectedTokenError();
 		case NUM:
 			return parseNum();
 		case IDENT:
 			return parseIdent();
-		case MINUS:
-			return parseMinus();
 		case OPEN_PAR:
 			return parseRoundPar();
 		case BOOL:
 			return parseBoolean();
-		case NOT:
-			return parseNot();
 		case OPEN_PAIR:
 			return parsePairLit();
-		case FST:
-			return parseFst();
-		case SND:
-			return parseSnd();
 		//L++
 		case STRINGLIT:
 			return parseString();
 		case OPEN_BRACE:
 		    return parseSetLiteral();
-		case IN:
-			return parseIn();
-		case DIM:
-			return parseCardinality();
 		//L++ end
+		default:
+			Operator<UnaryOperator<Exp>> op = prefixOperators[tokenizer.tokenType().ordinal()];
+			if (op == null)
+				unexpectedTokenError();
+			tryNext();
+			return op.node.apply(parseExp(op.precedence));
 		}
-		
 	}
 	
 	//L++
@@ -288,29 +264,10 @@ public class MyParser implements Parser {
 
 
 	private Ident parseIdent() throws ParserException {
-		String name = tokenizer.tokenString();
-		consume(IDENT); // or tryNext();
-		return new SimpleIdent(name);
-	}
-
-	private Sign parseMinus() throws ParserException {
-		consume(MINUS); // or tryNext();
-		return new Sign(parseAtom());
-	}
-
-	private Fst parseFst() throws ParserException {
-		consume(FST); // or tryNext();
-		return new Fst(parseAtom());
-	}
-
-	private Snd parseSnd() throws ParserException {
-		consume(SND); // or tryNext();
-		return new Snd(parseAtom());
-	}
-
-	private Not parseNot() throws ParserException {
-		consume(NOT); // or tryNext();
-		return new Not(parseAtom());
+		match(IDENT);
+		Ident ident = symbols.intern(tokenizer.tokenChars());
+		tryNext();
+		return ident;
 	}
 
 	private PairLit parsePairLit() throws ParserException {
@@ -9,5 +9,11 @@ public interface Scanner extends AutoCloseable {
 
 	String group(int group);
 
+	/* bounds of the group in the input, -1 if the group did not match */
+
+	int start(int group);
+
+	int end(int group);
+
 	public void close() throws ScannerException;
 }
\ No newline at end of file
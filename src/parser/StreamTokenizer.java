@@ -33,7 +33,8 @@ public class StreamTokenizer implements Tokenizer {
 		
 		//L++ 
 		final String numRegEx="(0[xX][0-9a-fA-F]+|0|[1-9][0-9]*)"; //group3
-		final String stringRegEx = "(\"([\\w\\d\\s!#-@\\[\\]^_'{-~]*|([\\\\]{2})*|([\\\\][\"]{1})*)*\")";//gruppo 4
+		// no line terminators in string literals
+		final String stringRegEx = "(\"([\\w\\d \\t\\x0B\\f!#-@\\[\\]^_'{-~]*|([\\\\]{2})*|([\\\\][\"]{1})*)*\")";//gruppo 4
 		final String symbolRegEx="(\\+|\\*|==|=|\\(|\\)|\\[|\\]|;|,|\\{|\\}|-|!|&&|\\\"|\\^|([\\\\][\\\\\\/])|([\\\\\\/][\\\\])|#|\\|)";
 		
 		//final regex
@@ -80,15 +81,21 @@ public class StreamTokenizer implements Tokenizer {
 	}
 
 	public StreamTokenizer(Reader reader) {
-		ss = new StreamScanner(regEx, reader);
+		ss = new ChunkedScanner(regEx, reader);
 	}
 
 	private void checkType() throws TokenizerException {
+		/** SKIP, no text needed **/
+		if (ss.start(SKIP.ordinal()) >= 0) {
+			tokenType = SKIP;
+			return;
+		}
+
 		tokenString = ss.group(); 
 		
 		
 		/** IDENT, BOOL **/
-		if(ss.group(IDENT.ordinal()) != null) {
+		if(ss.start(IDENT.ordinal()) >= 0) {
 			tokenType = keywords.get(tokenString); 
 			if(tokenType == null)  
 				tokenType=IDENT;
@@ -99,7 +106,7 @@ public class StreamTokenizer implements Tokenizer {
 		
 		
 		/** NUM **/
-		if(ss.group(NUM.ordinal())!=null) { 
+		if(ss.start(NUM.ordinal()) >= 0) { 
 			tokenType = NUM;
 			try { 				
 				intValue = Integer.parseInt(tokenString);
@@ -117,14 +124,8 @@ public class StreamTokenizer implements Tokenizer {
 			return;
 		}
 		
-		/** SKIP **/
-		if (ss.group(SKIP.ordinal()) != null) { // SKIP
-			tokenType = SKIP;
-			return;
-		}
-		
 		/** L++ STRINGLIT **/
-		if (ss.group(STRINGLIT.ordinal()) != null) { 
+		if (ss.start(STRINGLIT.ordinal()) >= 0) { 
 			tokenType = STRINGLIT;
 			stringValue = tokenString.substring(1, tokenString.length() - 1).replace("\\\"", "\"").replace("\\\\","\\");
 			return;
@@ -176,6 +177,11 @@ public class StreamTokenizer implements Tokenizer {
 		return tokenString;
 	}
 
+	@Override
+	public CharSequence tokenChars() {
+		return tokenString();
+	}
+
 	@Override
 	public boolean boolValue() {
 		checkValidToken(BOOL);
@@ -0,0 +1,67 @@
+package parser;
+
+import parser.ast.Ident;
+import parser.ast.SimpleIdent;
+
+/*
+ * interns identifiers: all occurrences of the same name are mapped to one
+ * canonical Ident; names are looked up directly from the lexeme of the
+ * tokenizer, so a String is created only the first time a name is found
+ */
+
+public class SymbolTable {
+	private static final int INITIAL_CAPACITY = 64; // must be a power of two
+
+	private Ident[] table = new Ident[INITIAL_CAPACITY];
+	private int size;
+
+	// same hash as String.hashCode(), so that it can be reused by SimpleIdent
+	private static int hash(CharSequence chars) {
+		int hash = 0;
+		for (int i = 0; i < chars.length(); i++)
+			hash = 31 * hash + chars.charAt(i);
+		return hash;
+	}
+
+	private static boolean sameName(Ident ident, CharSequence chars) {
+		String name = ident.getName();
+		if (name.length() != chars.length())
+			return false;
+		for (int i = 0; i < name.length(); i++)
+			if (name.charAt(i) != chars.charAt(i))
+				return false;
+		return true;
+	}
+
+	private static int indexFor(int hash, int capacity) {
+		return (hash ^ hash >>> 16) & capacity - 1;
+	}
+
+	private void grow() {
+		Ident[] old = table;
+		table = new Ident[2 * old.length];
+		for (Ident ident : old)
+			if (ident != null) {
+				int i = indexFor(ident.hashCode(), table.length);
+				while (table[i] != null)
+					i = i + 1 & table.length - 1;
+				table[i] = ident;
+			}
+	}
+
+	/* returns the canonical identifier with the given name */
+
+	public Ident intern(CharSequence name) {
+		int hash = hash(name);
+		int i = indexFor(hash, table.length);
+		for (Ident ident; (ident = table[i]) != null; i = i + 1 & table.length - 1)
+			if (ident.hashCode() == hash && sameName(ident, name))
+				return ident;
+		Ident ident = new SimpleIdent(name.toString());
+		table[i] = ident;
+		if (++size > table.length / 2)
+			grow();
+		return ident;
+	}
+
+}
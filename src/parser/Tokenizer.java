@@ -6,6 +6,12 @@ public interface Tokenizer extends AutoCloseable {
 
 	String tokenString();
 
+	/*
+	 * the lexeme of the current token, possibly a view of the input buffer which
+	 * is valid only until the next call of next()
+	 */
+	CharSequence tokenChars();
+
 	int intValue();
 
 	TokenType tokenType();
@@ -5,7 +5,7 @@ import static java.util.Objects.requireNonNull;
 import visitors.Visitor;
 
 public class Block implements Stmt {
-	private final StmtSeq stmtSeq;
+	protected final StmtSeq stmtSeq;
 
 	public Block(StmtSeq stmtSeq) {
 		this.stmtSeq = requireNonNull(stmtSeq);
@@ -0,0 +1,17 @@
+package parser.ast;
+
+import java.util.List;
+
+import visitors.Visitor;
+
+public class ExpList extends Seq<Exp> implements ExpSeq {
+
+	public ExpList(List<Exp> exps) {
+		super(exps);
+	}
+
+	@Override
+	public <T> T accept(Visitor<T> visitor) {
+		return visitor.visitExpSeq(elements);
+	}
+}
@@ -1,15 +0,0 @@
-package parser.ast;
-
-import visitors.Visitor;
-
-public class MoreStmt extends More<Stmt, StmtSeq> implements StmtSeq {
-
-	public MoreStmt(Stmt first, StmtSeq rest) {
-		super(first, rest);
-	}
-
-	@Override
-	public <T> T accept(Visitor<T> visitor) {
-		return visitor.visitMoreStmt(first, rest);
-	}
-}
@@ -0,0 +1,33 @@
+package parser.ast;
+
+/*
+ * occurrence of a variable bound to its declaration by
+ * visitors.resolution.Resolver: the variable is stored at index slot of the
+ * frame depth levels above the current one; each occurrence has its own node
+ */
+
+public class ResolvedIdent extends SimpleIdent {
+	public static final int UNDECLARED = -1; // depth of variables not in scope
+
+	private final int depth;
+	private final int slot;
+
+	public ResolvedIdent(String name, int depth, int slot) {
+		super(name);
+		this.depth = depth;
+		this.slot = slot;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public int getSlot() {
+		return slot;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(" + getName() + "," + depth + "," + slot + ")";
+	}
+}
@@ -0,0 +1,22 @@
+package parser.ast;
+
+import visitors.Visitor;
+
+/*
+ * block without declarations, built by visitors.resolution.Resolver: it needs
+ * no scope, hence the visitors see just its statements; programs containing
+ * such blocks cannot be written by visitors.serialization.AstWriter
+ */
+
+public class ScopeFreeBlock extends Block {
+
+	public ScopeFreeBlock(StmtSeq stmtSeq) {
+		super(stmtSeq);
+	}
+
+	@Override
+	public <T> T accept(Visitor<T> visitor) {
+		return stmtSeq.accept(visitor);
+	}
+
+}
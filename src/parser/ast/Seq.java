@@ -0,0 +1,29 @@
+package parser.ast;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * non-empty sequence stored in an array, so that its length is limited by the
+ * heap and not by the recursion depth of the parser and of the visitors
+ */
+
+public class Seq<T> {
+	protected final List<T> elements;
+
+	public Seq(List<T> elements) {
+		if (elements.isEmpty())
+			throw new IllegalArgumentException("Empty sequence");
+		for (T element : elements)
+			requireNonNull(element);
+		this.elements = unmodifiableList(new ArrayList<>(elements));
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + elements;
+	}
+}
@@ -6,9 +6,13 @@ import visitors.Visitor;
 
 public class SimpleIdent implements Ident {
 	private final String name;
+	private final int hash;
+
+	/* identifiers built by the parser are interned by parser.SymbolTable */
 
 	public SimpleIdent(String name) {
 		this.name = requireNonNull(name);
+		hash = name.hashCode();
 	}
 
 	@Override
@@ -27,7 +31,7 @@ public class SimpleIdent implements Ident {
 
 	@Override
 	public int hashCode() {
-		return name.hashCode();
+		return hash;
 	}
 
 	@Override
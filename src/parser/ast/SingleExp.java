@@ -1,15 +0,0 @@
-package parser.ast;
-
-import visitors.Visitor;
-
-public class SingleExp extends Single<Exp> implements ExpSeq {
-
-	public SingleExp(Exp single) {
-		super(single);
-	}
-
-	@Override
-	public <T> T accept(Visitor<T> visitor) {
-		return visitor.visitSingleExp(single);
-	}
-}
@@ -0,0 +1,17 @@
+package parser.ast;
+
+import java.util.List;
+
+import visitors.Visitor;
+
+public class StmtList extends Seq<Stmt> implements StmtSeq {
+
+	public StmtList(List<Stmt> stmts) {
+		super(stmts);
+	}
+
+	@Override
+	public <T> T accept(Visitor<T> visitor) {
+		return visitor.visitStmtSeq(elements);
+	}
+}
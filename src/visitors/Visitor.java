@@ -1,5 +1,7 @@
 package visitors;
 
+import java.util.List;
+
 import parser.ast.Block;
 import parser.ast.Exp;
 import parser.ast.ExpSeq;
@@ -16,7 +18,7 @@ public interface Visitor<T> {
 	
 	T visitEq(Exp left, Exp right);
 
-	T visitMoreStmt(Stmt first, StmtSeq rest);
+	T visitStmtSeq(List<Stmt> stmts);
 
 	T visitMul(Exp left, Exp right);
 
@@ -28,8 +30,6 @@ public interface Visitor<T> {
 
 	T visitIdent(Ident id); // the only corner case ...
 
-	T visitSingleStmt(Stmt stmt);
-
 	T visitDecStmt(Ident ident, Exp exp);
 
 	T visitNot(Exp exp);
@@ -56,9 +56,7 @@ public interface Visitor<T> {
 
 	T visitWhileStmt(Exp exp, Block whileBlock);
 
-	T visitMoreExp(Exp first, ExpSeq rest);
-
-	T visitSingleExp(Exp single);
+	T visitExpSeq(List<Exp> exps);
 	
 	T visitSetLiteral(ExpSeq expSeq);
 
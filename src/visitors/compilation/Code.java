@@ -0,0 +1,15 @@
+package visitors.compilation;
+
+import visitors.evaluation.Value;
+
+/*
+ * executable node built by Compiler: the operands, the addresses of the
+ * variables and the environment are bound when the node is built, so running
+ * it needs no dispatch on the AST; statements return null
+ */
+
+public abstract class Code {
+
+	public abstract Value run();
+
+}
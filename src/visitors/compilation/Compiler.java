@@ -0,0 +1,382 @@
+package visitors.compilation;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.PrintWriter;
+import java.util.List;
+
+import environments.EnvironmentException;
+import environments.FrameEnvironment;
+import parser.ast.*;
+import visitors.Visitor;
+import visitors.evaluation.*;
+
+/*
+ * compiles programs resolved by visitors.resolution.Resolver into trees of
+ * Code, which run with the same dynamic semantics as
+ * visitors.evaluation.Eval, including the order in which operands are
+ * evaluated and errors are found
+ */
+
+public class Compiler implements Visitor<Code> {
+
+	private final FrameEnvironment<Value> env;
+	private final PrintWriter printWriter;
+
+	public Compiler() {
+		env = new FrameEnvironment<>();
+		printWriter = new PrintWriter(System.out, true);
+	}
+
+	public Compiler(PrintWriter printWriter) {
+		env = new FrameEnvironment<>();
+		this.printWriter = requireNonNull(printWriter);
+	}
+
+	/*
+	 * the code runs in an environment which is already in use, as the loops
+	 * compiled by TieredEval do
+	 */
+	Compiler(FrameEnvironment<Value> env, PrintWriter printWriter) {
+		this.env = requireNonNull(env);
+		this.printWriter = requireNonNull(printWriter);
+	}
+
+	private Code[] compile(List<? extends AST> nodes) {
+		Code[] code = new Code[nodes.size()];
+		for (int i = 0; i < code.length; i++)
+			code[i] = nodes.get(i).accept(this);
+		return code;
+	}
+
+	/*** programs and statements ***/
+
+	@Override
+	public Code visitProg(StmtSeq stmtSeq) {
+		Code body = stmtSeq.accept(this);
+		return new Code() {
+			@Override
+			public Value run() {
+				try {
+					return body.run();
+				} catch (EnvironmentException e) { // undefined variable
+					throw new EvaluatorException(e);
+				}
+			}
+		};
+	}
+
+	@Override
+	public Code visitStmtSeq(List<Stmt> stmts) {
+		Code[] code = compile(stmts);
+		if (code.length == 1)
+			return code[0];
+		return new Code() {
+			@Override
+			public Value run() {
+				for (Code stmt : code)
+					stmt.run();
+				return null;
+			}
+		};
+	}
+
+	@Override
+	public Code visitAssignStmt(Ident ident, Exp exp) {
+		ResolvedIdent resolved = (ResolvedIdent) ident;
+		Code value = exp.accept(this);
+		if (resolved.getDepth() == ResolvedIdent.UNDECLARED)
+			return undeclared(ident, value);
+		int depth = resolved.getDepth(), slot = resolved.getSlot();
+		return new Code() {
+			@Override
+			public Value run() {
+				env.update(depth, slot, value.run());
+				return null;
+			}
+		};
+	}
+
+	@Override
+	public Code visitDecStmt(Ident ident, Exp exp) {
+		int slot = ((ResolvedIdent) ident).getSlot();
+		Code value = exp.accept(this);
+		return new Code() {
+			@Override
+			public Value run() {
+				env.dec(slot, value.run());
+				return null;
+			}
+		};
+	}
+
+	@Override
+	public Code visitPrintStmt(Exp exp) {
+		Code value = exp.accept(this);
+		return new Code() {
+			@Override
+			public Value run() {
+				printWriter.println(value.run());
+				return null;
+			}
+		};
+	}
+
+	@Override
+	public Code visitIfStmt(Exp exp, Block thenBlock, Block elseBlock) {
+		Code cond = exp.accept(this);
+		Code thenCode = thenBlock.accept(this);
+		Code elseCode = elseBlock == null ? null : elseBlock.accept(this);
+		return new Code() {
+			@Override
+			public Value run() {
+				if (cond.run().asBool())
+					thenCode.run();
+				else if (elseCode != null)
+					elseCode.run();
+				return null;
+			}
+		};
+	}
+
+	// blocks without declarations are compiled as their statements
+	@Override
+	public Code visitBlock(StmtSeq stmtSeq) {
+		Code body = stmtSeq.accept(this);
+		return new Code() {
+			@Override
+			public Value run() {
+				env.enterScope();
+				body.run();
+				env.exitScope();
+				return null;
+			}
+		};
+	}
+
+	@Override
+	public Code visitWhileStmt(Exp exp, Block whileBlock) {
+		Code cond = exp.accept(this);
+		Code body = whileBlock.accept(this);
+		return new Code() {
+			@Override
+			public Value run() {
+				while (cond.run().asBool())
+					body.run();
+				return null;
+			}
+		};
+	}
+
+	/*** variables ***/
+
+	// the error is raised when the variable is used, as by the environments
+	private static Code undeclared(Ident ident, Code value) {
+		return new Code() {
+			@Override
+			public Value run() {
+				if (value != null)
+					value.run();
+				throw new EnvironmentException("Undeclared variable " + ident.getName());
+			}
+		};
+	}
+
+	@Override
+	public Code visitIdent(Ident id) {
+		ResolvedIdent resolved = (ResolvedIdent) id;
+		if (resolved.getDepth() == ResolvedIdent.UNDECLARED)
+			return undeclared(id, null);
+		int depth = resolved.getDepth(), slot = resolved.getSlot();
+		if (depth == 0)
+			return new Code() {
+				@Override
+				public Value run() {
+					return env.lookup(0, slot);
+				}
+			};
+		return new Code() {
+			@Override
+			public Value run() {
+				return env.lookup(depth, slot);
+			}
+		};
+	}
+
+	/*** literals; values are immutable, so they are created once ***/
+
+	private static Code constant(Value value) {
+		return new Code() {
+			@Override
+			public Value run() {
+				return value;
+			}
+		};
+	}
+
+	@Override
+	public Code visitIntLiteral(int value) {
+		return constant(IntValue.of(value));
+	}
+
+	@Override
+	public Code visitBoolLiteral(boolean value) {
+		return constant(BoolValue.of(value));
+	}
+
+	@Override
+	public Code visitStringLiteral(String value) {
+		return constant(new StringValue(value));
+	}
+
+	// elements are evaluated and added from the last one, as by Eval
+	@Override
+	public Code visitExpSeq(List<Exp> exps) {
+		Code[] elements = compile(exps);
+		return new Code() {
+			@Override
+			public Value run() {
+				SetValue set = new SetValue();
+				for (int i = elements.length - 1; i >= 0; i--)
+					set.add(elements[i].run());
+				return set;
+			}
+		};
+	}
+
+	@Override
+	public Code visitSetLiteral(ExpSeq expSeq) {
+		return expSeq.accept(this);
+	}
+
+	@Override
+	public Code visitPairLit(Exp left, Exp right) {
+		Code fst = left.accept(this);
+		Code snd = right.accept(this);
+		return new Code() {
+			@Override
+			public Value run() {
+				return new PairValue(fst.run(), snd.run());
+			}
+		};
+	}
+
+	/*** operators; the most common ones specialize on their operands ***/
+
+	@Override
+	public Code visitAdd(Exp left, Exp right) {
+		return new SpecializingCode.Add(left.accept(this), right.accept(this));
+	}
+
+	@Override
+	public Code visitMul(Exp left, Exp right) {
+		return new SpecializingCode.Mul(left.accept(this), right.accept(this));
+	}
+
+	@Override
+	public Code visitAnd(Exp left, Exp right) {
+		Code l = left.accept(this);
+		Code r = right.accept(this);
+		return new Code() {
+			@Override
+			public Value run() {
+				return BoolValue.of(l.run().asBool() && r.run().asBool());
+			}
+		};
+	}
+
+	@Override
+	public Code visitEq(Exp left, Exp right) {
+		return new SpecializingCode.Eq(left.accept(this), right.accept(this));
+	}
+
+	@Override
+	public Code visitConcat(Exp left, Exp right) {
+		Code l = left.accept(this);
+		Code r = right.accept(this);
+		return new Code() {
+			@Override
+			public Value run() {
+				return l.run().asStringValue().concat(r.run().asStringValue());
+			}
+		};
+	}
+
+	@Override
+	public Code visitIn(Exp element, Exp set) {
+		return new SpecializingCode.In(element.accept(this), set.accept(this));
+	}
+
+	@Override
+	public Code visitUnion(Exp left, Exp right) {
+		Code l = left.accept(this);
+		Code r = right.accept(this);
+		return new Code() {
+			@Override
+			public Value run() {
+				return new SetValue(l.run().asSet()).add(r.run().asSet());
+			}
+		};
+	}
+
+	@Override
+	public Code visitIntersect(Exp left, Exp right) {
+		Code l = left.accept(this);
+		Code r = right.accept(this);
+		return new Code() {
+			@Override
+			public Value run() {
+				return new SetValue(l.run().asSet()).intersect(r.run().asSet());
+			}
+		};
+	}
+
+	@Override
+	public Code visitSign(Exp exp) {
+		Code operand = exp.accept(this);
+		return new Code() {
+			@Override
+			public Value run() {
+				return IntValue.of(-operand.run().asInt());
+			}
+		};
+	}
+
+	@Override
+	public Code visitNot(Exp exp) {
+		Code operand = exp.accept(this);
+		return new Code() {
+			@Override
+			public Value run() {
+				return BoolValue.of(!operand.run().asBool());
+			}
+		};
+	}
+
+	@Override
+	public Code visitFst(Exp exp) {
+		Code operand = exp.accept(this);
+		return new Code() {
+			@Override
+			public Value run() {
+				return operand.run().asPair().getFstVal();
+			}
+		};
+	}
+
+	@Override
+	public Code visitSnd(Exp exp) {
+		Code operand = exp.accept(this);
+		return new Code() {
+			@Override
+			public Value run() {
+				return operand.run().asPair().getSndVal();
+			}
+		};
+	}
+
+	@Override
+	public Code visitCardinality(Exp exp) {
+		return new SpecializingCode.Cardinality(exp.accept(this));
+	}
+}
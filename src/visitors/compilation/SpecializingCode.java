@@ -0,0 +1,184 @@
+package visitors.compilation;
+
+import visitors.evaluation.*;
+
+/*
+ * nodes which specialize themselves on the types of the values they see:
+ * the first run records in state the variant matching its operands, e.g.
+ * integer addition or string equality, which then checks its operands with
+ * an instanceof test instead of calling the conversions of Value; when a
+ * value of another type shows up the node falls back to the generic variant
+ * for good; all variants find errors in the same order as Eval
+ */
+
+abstract class SpecializingCode extends Code {
+	static final int UNINITIALIZED = 0, INT = 1, BOOL = 2, STRING = 3, SET = 4, GENERIC = 5;
+
+	protected int state = UNINITIALIZED;
+
+	// the variant for values of the type of value, GENERIC if there is none
+	static int variant(Value value) {
+		if (value instanceof IntValue)
+			return INT;
+		if (value instanceof BoolValue)
+			return BOOL;
+		if (value instanceof StringValue)
+			return STRING;
+		if (value instanceof SetValue)
+			return SET;
+		return GENERIC;
+	}
+
+	static final class Add extends SpecializingCode {
+		private final Code left, right;
+
+		Add(Code left, Code right) {
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		public Value run() {
+			Value l = left.run();
+			if (state == UNINITIALIZED)
+				state = INT;
+			if (state == INT && l instanceof IntValue) {
+				Value r = right.run();
+				if (r instanceof IntValue)
+					return IntValue.of(((IntValue) l).asInt() + ((IntValue) r).asInt());
+				state = GENERIC;
+				return IntValue.of(l.asInt() + r.asInt());
+			}
+			state = GENERIC;
+			return IntValue.of(l.asInt() + right.run().asInt());
+		}
+	}
+
+	static final class Mul extends SpecializingCode {
+		private final Code left, right;
+
+		Mul(Code left, Code right) {
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		public Value run() {
+			Value l = left.run();
+			if (state == UNINITIALIZED)
+				state = INT;
+			if (state == INT && l instanceof IntValue) {
+				Value r = right.run();
+				if (r instanceof IntValue)
+					return IntValue.of(((IntValue) l).asInt() * ((IntValue) r).asInt());
+				state = GENERIC;
+				return IntValue.of(l.asInt() * r.asInt());
+			}
+			state = GENERIC;
+			return IntValue.of(l.asInt() * right.run().asInt());
+		}
+	}
+
+	// equality of integers, booleans and strings compares their contents directly
+	static final class Eq extends SpecializingCode {
+		private final Code left, right;
+
+		Eq(Code left, Code right) {
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		public Value run() {
+			Value l = left.run(), r = right.run();
+			switch (state) {
+			case UNINITIALIZED:
+				int variant = variant(l);
+				state = variant == variant(r) && variant != SET ? variant : GENERIC;
+				return run(l, r);
+			case INT:
+				if (l instanceof IntValue && r instanceof IntValue)
+					return BoolValue.of(((IntValue) l).asInt() == ((IntValue) r).asInt());
+				break;
+			case BOOL:
+				if (l instanceof BoolValue && r instanceof BoolValue)
+					return BoolValue.of(((BoolValue) l).asBool() == ((BoolValue) r).asBool());
+				break;
+			case STRING:
+				if (l instanceof StringValue && r instanceof StringValue)
+					return BoolValue.of(l.equals(r));
+				break;
+			default:
+				return BoolValue.of(l.equals(r));
+			}
+			state = GENERIC;
+			return BoolValue.of(l.equals(r));
+		}
+
+		private Value run(Value l, Value r) {
+			switch (state) {
+			case INT:
+				return BoolValue.of(l.asInt() == r.asInt());
+			case BOOL:
+				return BoolValue.of(l.asBool() == r.asBool());
+			case STRING:
+				return BoolValue.of(l.asStringValue().equals(r.asStringValue()));
+			default:
+				return BoolValue.of(l.equals(r));
+			}
+		}
+	}
+
+	/*
+	 * the set is evaluated first and the element only if the set is not empty,
+	 * as by Eval; integers are looked up unboxed
+	 */
+	static final class In extends SpecializingCode {
+		private final Code element, set;
+
+		In(Code element, Code set) {
+			this.element = element;
+			this.set = set;
+		}
+
+		@Override
+		public Value run() {
+			SetValue s = set.run().asSet();
+			if (s.dim() == 0)
+				return BoolValue.FALSE;
+			Value e = element.run();
+			if (state == UNINITIALIZED)
+				state = e instanceof IntValue ? INT : GENERIC;
+			if (state == INT && e instanceof IntValue)
+				return BoolValue.of(s.contains(((IntValue) e).asInt()));
+			state = GENERIC;
+			return BoolValue.of(s.contains(e));
+		}
+	}
+
+	// strings and sets have a size, as in Eval
+	static final class Cardinality extends SpecializingCode {
+		private final Code operand;
+
+		Cardinality(Code operand) {
+			this.operand = operand;
+		}
+
+		@Override
+		public Value run() {
+			Value value = operand.run();
+			if (state == STRING && value instanceof StringValue)
+				return IntValue.of(((StringValue) value).length());
+			if (state == SET && value instanceof SetValue)
+				return IntValue.of(((SetValue) value).dim());
+			if (state == UNINITIALIZED)
+				state = value instanceof StringValue ? STRING : SET;
+			else
+				state = GENERIC;
+			if (value instanceof StringValue)
+				return IntValue.of(((StringValue) value).length());
+			return IntValue.of(value.asSet().dim());
+		}
+	}
+
+}
@@ -0,0 +1,68 @@
+package visitors.compilation;
+
+import java.io.PrintWriter;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import parser.ast.Block;
+import parser.ast.Exp;
+import parser.ast.Ident;
+import visitors.evaluation.Eval;
+import visitors.evaluation.Value;
+
+/*
+ * Eval which compiles hot loops: the iterations of each while statement are
+ * counted, and once they reach THRESHOLD the loop is compiled to Code and
+ * continues there from the next iteration; the code shares the environment
+ * of the visitor, so the live variables need no transfer, and later runs of
+ * the loop start in the code directly
+ */
+
+public class TieredEval extends Eval {
+	private static final int THRESHOLD = 100;
+
+	private static class Loop {
+		int iterations;
+		Code cond; // null until the loop is compiled
+		Code body;
+	}
+
+	// loops are identified by their bodies, since visitors do not see the statements
+	private final Map<Block, Loop> loops = new IdentityHashMap<>();
+
+	public TieredEval() {
+	}
+
+	public TieredEval(PrintWriter printWriter) {
+		super(printWriter);
+	}
+
+	// compiled code shares values without marking them, so none is updated in place
+	@Override
+	public Value visitAssignStmt(Ident ident, Exp exp) {
+		env.update(ident, exp.accept(this));
+		return null;
+	}
+
+	@Override
+	public Value visitWhileStmt(Exp exp, Block whileBlock) {
+		Loop loop = loops.get(whileBlock);
+		if (loop == null)
+			loops.put(whileBlock, loop = new Loop());
+		if (loop.cond == null)
+			while (exp.accept(this).asBool()) {
+				whileBlock.accept(this);
+				if (++loop.iterations == THRESHOLD) {
+					Compiler compiler = new Compiler(env, printWriter);
+					loop.cond = exp.accept(compiler);
+					loop.body = whileBlock.accept(compiler);
+					break;
+				}
+			}
+		if (loop.cond != null)
+			while (loop.cond.run().asBool())
+				loop.body.run();
+		return null;
+	}
+
+}
@@ -1,9 +1,18 @@
 package visitors.evaluation;
 
-public class BoolValue extends PrimValue<Boolean> {
+/* there are just two booleans, created once */
 
-	public BoolValue(Boolean value) {
-		super(value);
+public class BoolValue implements Value {
+	public static final BoolValue TRUE = new BoolValue(true), FALSE = new BoolValue(false);
+
+	private final boolean value;
+
+	private BoolValue(boolean value) {
+		this.value = value;
+	}
+
+	public static BoolValue of(boolean value) {
+		return value ? TRUE : FALSE;
 	}
 
 	@Override
@@ -12,7 +21,17 @@ public class BoolValue extends PrimValue<Boolean> {
 			return true;
 		if (!(obj instanceof BoolValue))
 			return false;
-		return value.equals(((BoolValue) obj).value);
+		return value == ((BoolValue) obj).value;
+	}
+
+	@Override
+	public int hashCode() {
+		return Boolean.hashCode(value);
+	}
+
+	@Override
+	public String toString() {
+		return Boolean.toString(value);
 	}
 
 	@Override
@@ -1,7 +1,7 @@
 package visitors.evaluation;
 
 import java.io.PrintWriter;
-import java.util.Iterator;
+import java.util.List;
 
 import environments.*;
 import parser.ast.*;
@@ -9,17 +9,35 @@ import visitors.*;
 
 import static java.util.Objects.requireNonNull;
 
+/* evaluates programs resolved by visitors.resolution.Resolver */
+
 public class Eval implements Visitor<Value> {
 
-	private final GenEnvironment<Value> env = new GenEnvironment<>();
-	private final PrintWriter printWriter;
+	protected final FrameEnvironment<Value> env = new FrameEnvironment<>();
+	protected final PrintWriter printWriter;
+	private final UnboxedEval unboxed = new UnboxedEval(this); // operands of int and bool operators
+	private final UpdateEval updates = new UpdateEval(this); // right-hand sides of assignments
+	private final ValueStore store; // null unless the values are hash-consed
 
 	public Eval() {
 		printWriter = new PrintWriter(System.out, true);
+		store = null;
 	}
 
 	public Eval(PrintWriter printWriter) {
 		this.printWriter = requireNonNull(printWriter);
+		store = null;
+	}
+
+	/* the strings, pairs and sets built by the program are hash-consed by store */
+	public Eval(PrintWriter printWriter, ValueStore store) {
+		this.printWriter = requireNonNull(printWriter);
+		this.store = requireNonNull(store);
+	}
+
+	// the instance kept by the store for the values equal to a fresh value
+	private Value canonical(Value value) {
+		return store == null ? value : store.canonical(value);
 	}
 
 	// dynamic semantics for programs; no value returned by the visitor
@@ -40,7 +58,7 @@ public class Eval implements Visitor<Value> {
 
 	@Override
 	public Value visitAssignStmt(Ident ident, Exp exp) {
-		env.update(ident, exp.accept(this));
+		env.update(ident, updates.valueOf(ident, exp));
 		return null;
 	}
 
@@ -52,13 +70,13 @@ public class Eval implements Visitor<Value> {
 
 	@Override
 	public Value visitDecStmt(Ident ident, Exp exp) {
-		env.dec(ident, exp.accept(this));
+		env.dec(ident, UpdateEval.share(exp.accept(this)));
 		return null;
 	}
 
 	@Override
 	public Value visitIfStmt(Exp exp, Block thenBlock, Block elseBlock) {
-		if (exp.accept(this).asBool())
+		if (unboxed.boolOf(exp))
 			thenBlock.accept(this);
 		else if (elseBlock != null)
 			elseBlock.accept(this);
@@ -77,15 +95,9 @@ public class Eval implements Visitor<Value> {
 	// no value returned by the visitor
 
 	@Override
-	public Value visitSingleStmt(Stmt stmt) {
-		stmt.accept(this);
-		return null;
-	}
-
-	@Override
-	public Value visitMoreStmt(Stmt first, StmtSeq rest) {
-		first.accept(this);
-		rest.accept(this);
+	public Value visitStmtSeq(List<Stmt> stmts) {
+		for (Stmt stmt : stmts)
+			stmt.accept(this);
 		return null;
 	}
 
@@ -93,34 +105,34 @@ public class Eval implements Visitor<Value> {
 
 	@Override
 	public Value visitAdd(Exp left, Exp right) {
-		return new IntValue(left.accept(this).asInt() + right.accept(this).asInt());
+		return IntValue.of(unboxed.intOf(left) + unboxed.intOf(right));
 	}
 
 	//L++
 	@Override
 	public Value visitConcat(Exp left, Exp right) {
-		return new StringValue(left.accept(this).asString() + right.accept(this).asString());
+		return left.accept(this).asStringValue().concat(right.accept(this).asStringValue());
 	}
 	
 	@Override
 	public Value visitIntLiteral(int value) {
-		return new IntValue(value);
+		return IntValue.of(value);
 	}
 
 	//L++
 	@Override
 	public Value visitStringLiteral(String value) {
-		return new StringValue(value);
+		return canonical(new StringValue(value));
 	}
 	
 	@Override
 	public Value visitMul(Exp left, Exp right) {
-		return new IntValue(left.accept(this).asInt() * right.accept(this).asInt());
+		return IntValue.of(unboxed.intOf(left) * unboxed.intOf(right));
 	}
 
 	@Override
 	public Value visitSign(Exp exp) {
-		return new IntValue(-exp.accept(this).asInt());
+		return IntValue.of(-unboxed.intOf(exp));
 	}
 
 	@Override
@@ -130,27 +142,35 @@ public class Eval implements Visitor<Value> {
 
 	@Override
 	public Value visitNot(Exp exp) {
-		return new BoolValue(!exp.accept(this).asBool());
+		return BoolValue.of(!unboxed.boolOf(exp));
 	}
 
 	@Override
 	public Value visitAnd(Exp left, Exp right) {
-		return new BoolValue(left.accept(this).asBool() && right.accept(this).asBool());
+		return BoolValue.of(unboxed.boolOf(left) && unboxed.boolOf(right));
 	}
 
 	@Override
 	public Value visitBoolLiteral(boolean value) {
-		return new BoolValue(value);
+		return BoolValue.of(value);
 	}
 
 	@Override
 	public Value visitEq(Exp left, Exp right) {
-		return new BoolValue(left.accept(this).equals(right.accept(this)));
+		return BoolValue.of(eq(left, right));
+	}
+
+	// hash-consed values are equal just if they are the same instance
+	boolean eq(Exp left, Exp right) {
+		Value l = left.accept(this), r = right.accept(this);
+		if (store != null && l != r && store.isCanonical(l) && store.isCanonical(r))
+			return false;
+		return l.equals(r);
 	}
 
 	@Override
 	public Value visitPairLit(Exp left, Exp right) {
-		return new PairValue(left.accept(this), right.accept(this));
+		return canonical(new PairValue(UpdateEval.share(left.accept(this)), UpdateEval.share(right.accept(this))));
 	}
 
 	@Override
@@ -165,55 +185,67 @@ public class Eval implements Visitor<Value> {
 	//L++
 	@Override
 	public Value visitWhileStmt(Exp exp, Block whileBlock) {
-		while (exp.accept(this).asBool()) {
+		while (unboxed.boolOf(exp)) {
 			whileBlock.accept(this);
 		}
 		return null;
 	}
 
-	@Override
-	public Value visitSingleExp(Exp single) {
-		return new SetValue().add(single.accept(this));
-	}
 
 	@Override
 	public Value visitSetLiteral(ExpSeq expSeq) {
 		return expSeq.accept(this);
 	}
 
+	// elements are evaluated and added from the last one, as the former
+	// right-nested sequences did
 	@Override
-	public Value visitMoreExp(Exp first, ExpSeq rest) {
-	    SetValue fst = rest.accept(this).asSet();
-		return fst.add(first.accept(this));
+	public Value visitExpSeq(List<Exp> exps) {
+		SetValue set = new SetValue();
+		for (int i = exps.size() - 1; i >= 0; i--)
+			set.add(UpdateEval.share(exps.get(i).accept(this)));
+		return canonical(set);
 	}
 	
 	@Override
 	public Value visitIn(Exp element, Exp set) {
-		Iterator<Value> it=set.accept(this).asSet().iterator();
-		while (it.hasNext())
-			if(it.next().equals((element.accept(this))))
-	    		return new BoolValue(true);
-	    return new BoolValue(false);
+		return BoolValue.of(in(element, set));
+	}
+
+	/*
+	 * the set is evaluated first and the element, once, only if the set is not
+	 * empty; then it is looked up by hash, which finds what comparing it with
+	 * every element would find, since equal values have equal hash codes
+	 */
+	boolean in(Exp element, Exp set) {
+		SetValue s=set.accept(this).asSet();
+		if (s.dim()==0)
+			return false;
+		return s.contains(element.accept(this));
 	}
 	
 	@Override
 	public Value visitCardinality(Exp exp) {
+		return IntValue.of(cardinality(exp));
+	}
+
+	int cardinality(Exp exp) {
 		int res=0;
 		try {
-			res=exp.accept(this).asString().length();
+			res=exp.accept(this).asStringValue().length();
 		} catch (EvaluatorException e) {
 			res = exp.accept(this).asSet().dim();
 			}
-		return new IntValue(res);
+		return res;
 	}
 
 	@Override
 	public Value visitUnion(Exp left, Exp right) {
-		return new SetValue(left.accept(this).asSet()).add(right.accept(this).asSet());
+		return canonical(new SetValue(left.accept(this).asSet()).add(right.accept(this).asSet()));
 	}
 
 	@Override
 	public Value visitIntersect(Exp left, Exp right) {
-		return new SetValue(left.accept(this).asSet()).intersect(right.accept(this).asSet());
+		return canonical(new SetValue(left.accept(this).asSet()).intersect(right.accept(this).asSet()));
 	}
 }
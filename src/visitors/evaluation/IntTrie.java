@@ -0,0 +1,379 @@
+package visitors.evaluation;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/*
+ * node of a persistent hash array mapped trie of unboxed ints, in the CHAMP
+ * layout: at each level 5 bits of the hash select either an element, kept in
+ * elements, or a subtrie, kept in nodes, both in the order of their bits in
+ * dataMap and nodeMap; nodes are never modified once built, so that sets
+ * share them, and adding an element copies just the path to it
+ *
+ * the hash is a bijection of the ints, hence two elements always part before
+ * the bits run out; a subtrie holds at least two elements, so the shape of
+ * a trie depends only on its elements
+ */
+
+final class IntTrie {
+	private static final int BITS = 5, MASK = (1 << BITS) - 1;
+	private static final int[] NO_ELEMENTS = {};
+	private static final IntTrie[] NO_NODES = {};
+
+	static final IntTrie EMPTY = new IntTrie(0, 0, NO_ELEMENTS, NO_NODES, 0);
+
+	private final int dataMap, nodeMap;
+	private final int[] elements;
+	private final IntTrie[] nodes;
+	final int size;
+	private int hash; // 0 until computed
+
+	private IntTrie(int dataMap, int nodeMap, int[] elements, IntTrie[] nodes, int size) {
+		this.dataMap = dataMap;
+		this.nodeMap = nodeMap;
+		this.elements = elements;
+		this.nodes = nodes;
+		this.size = size;
+	}
+
+	// Fibonacci hashing, so that consecutive ints are spread over the trie
+	private static int hash(int value) {
+		return value * 0x9E3779B9;
+	}
+
+	private static int position(int hash, int shift) {
+		return (hash >>> shift) & MASK;
+	}
+
+	private static int index(int map, int bit) {
+		return Integer.bitCount(map & (bit - 1));
+	}
+
+	/*** queries ***/
+
+	boolean contains(int value) {
+		return contains(value, hash(value), 0);
+	}
+
+	private boolean contains(int value, int hash, int shift) {
+		IntTrie node = this;
+		while (true) {
+			int bit = 1 << position(hash, shift);
+			if ((node.dataMap & bit) != 0)
+				return node.elements[index(node.dataMap, bit)] == value;
+			if ((node.nodeMap & bit) == 0)
+				return false;
+			node = node.nodes[index(node.nodeMap, bit)];
+			shift += BITS;
+		}
+	}
+
+	/*** updates, which return new nodes, or this one if nothing changes ***/
+
+	IntTrie add(int value) {
+		return add(value, hash(value), 0);
+	}
+
+	private IntTrie add(int value, int hash, int shift) {
+		int bit = 1 << position(hash, shift);
+		if ((dataMap & bit) != 0) {
+			int i = index(dataMap, bit);
+			int element = elements[i];
+			if (element == value)
+				return this;
+			IntTrie node = pair(element, hash(element), value, hash, shift + BITS);
+			return new IntTrie(dataMap ^ bit, nodeMap | bit, remove(elements, i),
+					insert(nodes, index(nodeMap, bit), node), size + 1);
+		}
+		if ((nodeMap & bit) != 0) {
+			int i = index(nodeMap, bit);
+			IntTrie node = nodes[i].add(value, hash, shift + BITS);
+			if (node == nodes[i])
+				return this;
+			IntTrie[] copy = nodes.clone();
+			copy[i] = node;
+			return new IntTrie(dataMap, nodeMap, elements, copy, size + 1);
+		}
+		return new IntTrie(dataMap | bit, nodeMap, insert(elements, index(dataMap, bit), value), nodes, size + 1);
+	}
+
+	/*
+	 * the elements of both tries; the subtries found in just one of them are
+	 * shared, and so is a whose elements include those of b
+	 */
+	static IntTrie union(IntTrie a, IntTrie b) {
+		return a.size < b.size ? union(b, a, 0) : union(a, b, 0);
+	}
+
+	private static IntTrie union(IntTrie a, IntTrie b, int shift) {
+		if (a == b || b.size == 0)
+			return a;
+		int dataMap = 0, nodeMap = 0, size = 0, e = 0, n = 0;
+		int[] elements = new int[Integer.bitCount(a.dataMap | b.dataMap)];
+		IntTrie[] nodes = new IntTrie[Integer.bitCount(a.nodeMap | b.nodeMap | a.dataMap & b.dataMap)];
+		boolean changed = false;
+		for (int map = a.dataMap | a.nodeMap | b.dataMap | b.nodeMap; map != 0; map &= map - 1) {
+			int bit = Integer.lowestOneBit(map);
+			IntTrie node;
+			if ((a.nodeMap & bit) != 0) {
+				IntTrie nodeA = a.nodes[index(a.nodeMap, bit)];
+				if ((b.nodeMap & bit) != 0)
+					node = union(nodeA, b.nodes[index(b.nodeMap, bit)], shift + BITS);
+				else if ((b.dataMap & bit) != 0) {
+					int element = b.elements[index(b.dataMap, bit)];
+					node = nodeA.add(element, hash(element), shift + BITS);
+				} else
+					node = nodeA;
+				changed |= node != nodeA;
+			} else if ((b.nodeMap & bit) != 0) {
+				node = b.nodes[index(b.nodeMap, bit)];
+				if ((a.dataMap & bit) != 0) {
+					int element = a.elements[index(a.dataMap, bit)];
+					node = node.add(element, hash(element), shift + BITS);
+				}
+				changed = true;
+			} else {
+				int element;
+				if ((a.dataMap & bit) == 0) {
+					element = b.elements[index(b.dataMap, bit)];
+					changed = true;
+				} else {
+					element = a.elements[index(a.dataMap, bit)];
+					if ((b.dataMap & bit) != 0) {
+						int other = b.elements[index(b.dataMap, bit)];
+						if (element != other) {
+							nodeMap |= bit;
+							nodes[n++] = pair(element, hash(element), other, hash(other), shift + BITS);
+							size += 2;
+							changed = true;
+							continue;
+						}
+					}
+				}
+				dataMap |= bit;
+				elements[e++] = element;
+				size++;
+				continue;
+			}
+			nodeMap |= bit;
+			nodes[n++] = node;
+			size += node.size;
+		}
+		if (!changed)
+			return a;
+		return new IntTrie(dataMap, nodeMap, trim(elements, e), trim(nodes, n), size);
+	}
+
+	// subtrie of two elements, as deep as their hashes are equal
+	private static IntTrie pair(int a, int hashA, int b, int hashB, int shift) {
+		int positionA = position(hashA, shift), positionB = position(hashB, shift);
+		if (positionA == positionB)
+			return new IntTrie(0, 1 << positionA, NO_ELEMENTS,
+					new IntTrie[] { pair(a, hashA, b, hashB, shift + BITS) }, 2);
+		int[] elements = positionA < positionB ? new int[] { a, b } : new int[] { b, a };
+		return new IntTrie(1 << positionA | 1 << positionB, 0, elements, NO_NODES, 2);
+	}
+
+	/*
+	 * the elements which are in other too; the subtries whose elements are all
+	 * kept are shared rather than rebuilt
+	 */
+	IntTrie retain(IntTrie other) {
+		return retain(this, other, 0);
+	}
+
+	private static IntTrie retain(IntTrie a, IntTrie b, int shift) {
+		if (a == b)
+			return a;
+		int dataMap = 0, nodeMap = 0, size = 0, e = 0, n = 0;
+		int[] elements = new int[a.elements.length + a.nodes.length];
+		IntTrie[] nodes = new IntTrie[a.nodes.length];
+		boolean changed = false;
+		for (int map = a.dataMap | a.nodeMap; map != 0; map &= map - 1) { // in the order of the bits
+			int bit = Integer.lowestOneBit(map);
+			if ((a.dataMap & bit) != 0) {
+				int element = a.elements[index(a.dataMap, bit)];
+				if (b.contains(element, hash(element), shift)) {
+					dataMap |= bit;
+					elements[e++] = element;
+					size++;
+				} else
+					changed = true;
+				continue;
+			}
+			IntTrie node = a.nodes[index(a.nodeMap, bit)], kept;
+			if ((b.nodeMap & bit) != 0)
+				kept = retain(node, b.nodes[index(b.nodeMap, bit)], shift + BITS);
+			else if ((b.dataMap & bit) != 0) {
+				int element = b.elements[index(b.dataMap, bit)];
+				kept = node.contains(element, hash(element), shift + BITS) ? EMPTY.add(element) : EMPTY;
+			} else
+				kept = EMPTY;
+			changed |= kept != node;
+			if (kept.size == 1) { // moves up as an element
+				dataMap |= bit;
+				elements[e++] = kept.elements[0];
+			} else if (kept.size > 1) {
+				nodeMap |= bit;
+				nodes[n++] = kept;
+			}
+			size += kept.size;
+		}
+		if (!changed)
+			return a;
+		if (size == 0)
+			return EMPTY;
+		return new IntTrie(dataMap, nodeMap, trim(elements, e), trim(nodes, n), size);
+	}
+
+	/*** whole tries ***/
+
+	// tries with the same elements have the same shape
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof IntTrie))
+			return false;
+		IntTrie trie = (IntTrie) obj;
+		if (size != trie.size || dataMap != trie.dataMap || nodeMap != trie.nodeMap)
+			return false;
+		for (int i = 0; i < elements.length; i++)
+			if (elements[i] != trie.elements[i])
+				return false;
+		for (int i = 0; i < nodes.length; i++)
+			if (!nodes[i].equals(trie.nodes[i]))
+				return false;
+		return true;
+	}
+
+	/*
+	 * the sum of the elements, as the hash code of the set of their IntValues;
+	 * it is computed once, and the nodes built by updates reuse the hash codes
+	 * of the subtries they share
+	 */
+	@Override
+	public int hashCode() {
+		if (hash == 0) {
+			int sum = 0;
+			for (int element : elements)
+				sum += element;
+			for (IntTrie node : nodes)
+				sum += node.hashCode();
+			hash = sum;
+		}
+		return hash;
+	}
+
+	// the hash code if already computed, otherwise 0
+	int knownHashCode() {
+		return hash;
+	}
+
+	int[] toSortedArray() {
+		int[] array = new int[size];
+		int n = 0;
+		for (IntIterator it = new IntIterator(this); it.hasNext();)
+			array[n++] = it.nextInt();
+		Arrays.sort(array);
+		return array;
+	}
+
+	Iterator<Value> iterator() {
+		return new IntIterator(this);
+	}
+
+	// depth-first visit of the trie; elements are boxed when returned as values
+	private static class IntIterator implements Iterator<Value> {
+		private final IntTrie[] path = new IntTrie[8]; // at most 7 levels
+		private final int[] next = new int[8]; // next element, then next node, of each node of the path
+		private int depth;
+
+		IntIterator(IntTrie root) {
+			path[0] = root;
+			advance();
+		}
+
+		// moves to a node with elements left, if any
+		private void advance() {
+			while (depth >= 0) {
+				IntTrie node = path[depth];
+				int i = next[depth];
+				if (i < node.elements.length)
+					return;
+				i -= node.elements.length;
+				if (i < node.nodes.length) {
+					next[depth]++;
+					path[++depth] = node.nodes[i];
+					next[depth] = 0;
+				} else
+					depth--;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return depth >= 0;
+		}
+
+		int nextInt() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			int element = path[depth].elements[next[depth]++];
+			advance();
+			return element;
+		}
+
+		@Override
+		public Value next() {
+			return IntValue.of(nextInt());
+		}
+	}
+
+	/*** arrays ***/
+
+	private static int[] insert(int[] array, int i, int value) {
+		int[] copy = new int[array.length + 1];
+		System.arraycopy(array, 0, copy, 0, i);
+		copy[i] = value;
+		System.arraycopy(array, i, copy, i + 1, array.length - i);
+		return copy;
+	}
+
+	private static int[] remove(int[] array, int i) {
+		int[] copy = new int[array.length - 1];
+		System.arraycopy(array, 0, copy, 0, i);
+		System.arraycopy(array, i + 1, copy, i, copy.length - i);
+		return copy;
+	}
+
+	private static IntTrie[] insert(IntTrie[] array, int i, IntTrie node) {
+		IntTrie[] copy = new IntTrie[array.length + 1];
+		System.arraycopy(array, 0, copy, 0, i);
+		copy[i] = node;
+		System.arraycopy(array, i, copy, i + 1, array.length - i);
+		return copy;
+	}
+
+	private static int[] trim(int[] array, int length) {
+		if (length == 0)
+			return NO_ELEMENTS;
+		if (length == array.length)
+			return array;
+		int[] copy = new int[length];
+		System.arraycopy(array, 0, copy, 0, length);
+		return copy;
+	}
+
+	private static IntTrie[] trim(IntTrie[] array, int length) {
+		if (length == 0)
+			return NO_NODES;
+		if (length == array.length)
+			return array;
+		IntTrie[] copy = new IntTrie[length];
+		System.arraycopy(array, 0, copy, 0, length);
+		return copy;
+	}
+
+}
@@ -1,9 +1,29 @@
 package visitors.evaluation;
 
-public class IntValue extends PrimValue<Integer> {
+/*
+ * integers are stored unboxed; the values of small integers are created once
+ * and shared, since values are never mutated
+ */
 
-	public IntValue(Integer value) {
-		super(value);
+public class IntValue implements Value {
+	private static final int CACHE_LOW = -128, CACHE_HIGH = 1024;
+	private static final IntValue[] cache = new IntValue[CACHE_HIGH - CACHE_LOW];
+
+	static {
+		for (int i = 0; i < cache.length; i++)
+			cache[i] = new IntValue(CACHE_LOW + i);
+	}
+
+	private final int value;
+
+	private IntValue(int value) {
+		this.value = value;
+	}
+
+	public static IntValue of(int value) {
+		if (value >= CACHE_LOW && value < CACHE_HIGH)
+			return cache[value - CACHE_LOW];
+		return new IntValue(value);
 	}
 
 	@Override
@@ -12,7 +32,17 @@ public class IntValue extends PrimValue<Integer> {
 			return true;
 		if (!(obj instanceof IntValue))
 			return false;
-		return value.equals(((IntValue) obj).value);
+		return value == ((IntValue) obj).value;
+	}
+
+	@Override
+	public int hashCode() {
+		return Integer.hashCode(value);
+	}
+
+	@Override
+	public String toString() {
+		return Integer.toString(value);
 	}
 
 	@Override
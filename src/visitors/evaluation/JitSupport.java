@@ -0,0 +1,47 @@
+package visitors.evaluation;
+
+/*
+ * operations called by the classes generated by visitors.jit.JitCompiler,
+ * where ints, booleans and strings are unboxed; values are boxed only when
+ * they are stored in sets and pairs
+ */
+
+public class JitSupport {
+
+	private JitSupport() {
+	}
+
+	public static Value box(int value) {
+		return IntValue.of(value);
+	}
+
+	public static Value box(boolean value) {
+		return BoolValue.of(value);
+	}
+
+	public static Value box(String value) {
+		return new StringValue(value);
+	}
+
+	/* the set is not empty, otherwise the element would not be evaluated */
+	public static boolean in(SetValue set, Value elem) {
+		return set.contains(elem);
+	}
+
+	public static SetValue union(SetValue left, SetValue right) {
+		SetValue set = new SetValue(left);
+		set.add(right);
+		return set;
+	}
+
+	public static SetValue intersect(SetValue left, SetValue right) {
+		SetValue set = new SetValue(left);
+		set.intersect(right);
+		return set;
+	}
+
+	/* error of the operands of ^ which are not strings, as raised by asString() */
+	public static EvaluatorException notAString() {
+		return new EvaluatorException("Expecting a string");
+	}
+}
@@ -6,6 +6,7 @@ public class PairValue implements Value {
 
 	private final Value fstVal;
 	private final Value sndVal;
+	private int hash; // 0 until computed
 
 	public PairValue(Value fstVal, Value sndVal) {
 		this.fstVal = requireNonNull(fstVal);
@@ -30,9 +31,12 @@ public class PairValue implements Value {
 		return "[" + fstVal + ", " + sndVal + "]";
 	}
 
+	// computed once, since pairs are never mutated
 	@Override
 	public int hashCode() {
-		return 31 * fstVal.hashCode() + sndVal.hashCode();
+		if (hash == 0)
+			hash = 31 * fstVal.hashCode() + sndVal.hashCode();
+		return hash;
 	}
 
 	@Override
@@ -42,6 +46,8 @@ public class PairValue implements Value {
 		if (!(obj instanceof PairValue))
 			return false;
 		PairValue op = (PairValue) obj;
+		if (hash != 0 && op.hash != 0 && hash != op.hash) // both computed
+			return false;
 		return fstVal.equals(op.fstVal) && sndVal.equals(op.sndVal);
 	}
 }
@@ -1,5 +1,4 @@
 package visitors.evaluation;
-import java.util.HashSet;
 import java.util.Iterator;
 
 
@@ -10,22 +9,35 @@ import java.util.Iterator;
  *
  */
 
+/*
+ * the elements are kept in persistent tries, which sets share: copying a set
+ * takes constant time, and adding the elements of a small set to a large one
+ * copies just the paths to them; sets of integers only are stored unboxed in
+ * an IntTrie, and their elements move to a ValueTrie, for good, when
+ * something else is added; sets of integers are printed in ascending order
+ *
+ * the methods which add elements and intersect change the set, as before, so
+ * they are called only on fresh copies, or by UpdateEval on the set of a
+ * variable which holds its only reference; the tries are never changed
+ */
+
 public class SetValue implements Value, Iterable<Value> {
-	private final HashSet<Value> elements ;
+	private IntTrie ints; // null once values is used
+	private ValueTrie values;
+	boolean unique; // referenced only by the variable UpdateEval stored it in
 	
 	public SetValue() {
-		elements = new HashSet<>();
+		ints = IntTrie.EMPTY;
 	}
 	
 	public SetValue(SetValue set) {
-		this();
-		for (Value element : set.elements)
-			this.add(element);
+		ints = set.ints;
+		values = set.values;
 	}
 	
 	public SetValue(Value head, SetValue tail) {
 		this(tail);
-		elements.add(head);
+		add(head);
 	}
 	
 	public SetValue(Value value) {
@@ -33,9 +45,17 @@ public class SetValue implements Value, Iterable<Value> {
 		this.add(value);
 	}
 
+	// the integers are boxed and added to a ValueTrie
+	private void generalize() {
+		values = ValueTrie.EMPTY;
+		for (Value element : this)
+			values = values.add(element);
+		ints = null;
+	}
+
 	@Override
 	public Iterator<Value> iterator() {
-		return elements.iterator();
+		return ints != null ? ints.iterator() : values.iterator();
 	}
 
 	@Override 
@@ -45,31 +65,86 @@ public class SetValue implements Value, Iterable<Value> {
 	
 	@Override
 	public String toString() {
-		return "{" +elements.toString().substring(1).substring(0, (elements.toString().length()-2))+"}";
+		StringBuilder builder = new StringBuilder("{");
+		String separator = "";
+		if (ints != null)
+			for (int element : ints.toSortedArray()) {
+				builder.append(separator).append(element);
+				separator = ", ";
+			}
+		else
+			for (Value element : this) {
+				builder.append(separator).append(element);
+				separator = ", ";
+			}
+		return builder.append('}').toString();
 	}
 
 	public Value add(Value e){
-		elements.add(e);
+		if (ints != null) {
+			if (e instanceof IntValue) {
+				ints = ints.add(((IntValue) e).asInt());
+				return this;
+			}
+			generalize();
+		}
+		values = values.add(e);
 		return this	;
 	}
 	
+	// the tries are merged, sharing the subtries found in just one of them
 	public Value add(SetValue set){
-		for (Value element : set.elements)
-			this.add(element);	
+		if (ints != null && set.ints != null) {
+			ints = IntTrie.union(ints, set.ints);
+			return this;
+		}
+		if (ints != null)
+			generalize();
+		if (set.ints == null)
+			values = ValueTrie.union(values, set.values);
+		else
+			for (Value element : set)
+				values = values.add(element);	
 		return this;
 	}
 	
+	// cached by the tries, hence computed again only for the nodes built since
 	@Override
 	public int hashCode() {
-		return elements.hashCode();
+		return ints != null ? ints.hashCode() : values.hashCode();
 	}
-	
+
+	private int knownHashCode() {
+		return ints != null ? ints.knownHashCode() : values.knownHashCode();
+	}
+
+	public boolean contains(Value e) {
+		if (ints != null)
+			return e instanceof IntValue && ints.contains(((IntValue) e).asInt());
+		return values.contains(e);
+	}
+
+	public boolean contains(int e) {
+		return ints != null ? ints.contains(e) : values.contains(IntValue.of(e));
+	}
+
 	public int dim() {
-		return elements.size();
+		return ints != null ? ints.size : values.size;
 	}
 	
+	// the result holds only integers if one of the sets does
 	public Value intersect(SetValue set) {
-		elements.retainAll(set.elements);
+		if (ints != null && set.ints != null)
+			ints = ints.retain(set.ints);
+		else if (ints != null || set.ints != null) {
+			IntTrie retained = IntTrie.EMPTY;
+			for (Value element : ints != null ? this : set)
+				if ((ints != null ? set : this).contains(element))
+					retained = retained.add(((IntValue) element).asInt());
+			ints = retained;
+			values = null;
+		} else
+			values = values.retain(set.values);
 		return this;
 	}
 	
@@ -79,7 +154,18 @@ public class SetValue implements Value, Iterable<Value> {
 			return true;
 		if (!(obj instanceof SetValue))
 			return false;
-		return elements.equals(((SetValue) obj).elements);
+		SetValue set = (SetValue) obj;
+		if (dim() != set.dim())
+			return false;
+		int hash = knownHashCode(), other = set.knownHashCode(); // 0 when not computed yet
+		if (hash != 0 && other != 0 && hash != other)
+			return false;
+		if (ints != null && set.ints != null)
+			return ints.equals(set.ints);
+		for (Value element : set)
+			if (!contains(element))
+				return false;
+		return true;
 	}
 
 
@@ -1,22 +1,100 @@
 package visitors.evaluation;
 
-public class StringValue extends PrimValue<String> {
-	
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static java.util.Objects.requireNonNull;
+
+/*
+ * strings are ropes: a concatenation just keeps its two operands, and its
+ * characters are copied, once, only when they are needed, by asString(),
+ * printing, hashing or equality; the flat string then replaces the operands,
+ * so that they can be collected; the length is known without flattening
+ *
+ * short operands are joined at once, so that the leaves do not get too small
+ */
+
+public class StringValue implements Value {
+	private static final int SHORT = 32; // length of the strings joined at once
+
+	private String value; // null until the concatenation is flattened
+	private StringValue left, right; // operands of the concatenation, null once flattened
+	private final int length;
+
 	public StringValue(String value) {
-		super(value);
+		this.value = requireNonNull(value);
+		length = value.length();
+	}
+
+	private StringValue(StringValue left, StringValue right) {
+		this.left = left;
+		this.right = right;
+		length = left.length + right.length;
+	}
+
+	public StringValue concat(StringValue string) {
+		if (string.length == 0)
+			return this;
+		if (length == 0)
+			return string;
+		if (length + string.length <= SHORT)
+			return new StringValue(asString() + string.asString());
+		return new StringValue(this, string);
+	}
+
+	public int length() {
+		return length;
+	}
+
+	// the leaves are copied from the last one, without recursion, since ropes built by loops are deep
+	private void flatten() {
+		char[] chars = new char[length];
+		int end = length;
+		Deque<StringValue> nodes = new ArrayDeque<>();
+		nodes.push(this);
+		while (!nodes.isEmpty()) {
+			StringValue node = nodes.pop();
+			if (node.value != null) {
+				end -= node.length;
+				node.value.getChars(0, node.length, chars, end);
+			} else {
+				nodes.push(node.left);
+				nodes.push(node.right);
+			}
+		}
+		value = new String(chars);
+		left = right = null;
 	}
-	
+
 	@Override
 	public String asString() {
+		if (value == null)
+			flatten();
 		return value;
 	}
-	
+
+	@Override
+	public StringValue asStringValue() {
+		return this;
+	}
+
 	@Override
 	public final boolean equals(Object obj) {
 		if (this == obj)
 			return true;
 		if (!(obj instanceof StringValue))
 			return false;
-		return value.equals(((StringValue) obj).value);
+		StringValue string = (StringValue) obj;
+		return length == string.length && asString().equals(string.asString());
+	}
+
+	@Override
+	public int hashCode() {
+		return asString().hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return asString();
 	}
 }
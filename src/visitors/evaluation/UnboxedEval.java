@@ -0,0 +1,213 @@
+package visitors.evaluation;
+
+import java.util.List;
+
+import parser.ast.*;
+import visitors.Visitor;
+
+/*
+ * evaluates the operands of the integer and boolean operators of Eval to raw
+ * int and boolean values: arithmetic and logical operators combine the raw
+ * values of their operands, so that only the result which escapes is boxed;
+ * any other expression is evaluated by Eval and then converted, which finds
+ * the same errors in the same order as Eval
+ */
+
+class UnboxedEval implements Visitor<Void> {
+	private final Eval eval;
+
+	private boolean wantInt; // type requested by the caller
+	private int intResult;
+	private boolean boolResult;
+
+	UnboxedEval(Eval eval) {
+		this.eval = eval;
+	}
+
+	int intOf(Exp exp) {
+		boolean saved = wantInt;
+		wantInt = true;
+		exp.accept(this);
+		wantInt = saved;
+		return intResult;
+	}
+
+	boolean boolOf(Exp exp) {
+		boolean saved = wantInt;
+		wantInt = false;
+		exp.accept(this);
+		wantInt = saved;
+		return boolResult;
+	}
+
+	/*** results, converted to the requested type as Eval would do ***/
+
+	private Void result(Value value) {
+		if (wantInt)
+			intResult = value.asInt();
+		else
+			boolResult = value.asBool();
+		return null;
+	}
+
+	private Void result(int value) {
+		if (!wantInt)
+			return result(IntValue.of(value));
+		intResult = value;
+		return null;
+	}
+
+	private Void result(boolean value) {
+		if (wantInt)
+			return result(BoolValue.of(value));
+		boolResult = value;
+		return null;
+	}
+
+	/*** integer and boolean operators ***/
+
+	@Override
+	public Void visitAdd(Exp left, Exp right) {
+		return result(intOf(left) + intOf(right));
+	}
+
+	@Override
+	public Void visitMul(Exp left, Exp right) {
+		return result(intOf(left) * intOf(right));
+	}
+
+	@Override
+	public Void visitSign(Exp exp) {
+		return result(-intOf(exp));
+	}
+
+	@Override
+	public Void visitNot(Exp exp) {
+		return result(!boolOf(exp));
+	}
+
+	@Override
+	public Void visitAnd(Exp left, Exp right) {
+		return result(boolOf(left) && boolOf(right));
+	}
+
+	@Override
+	public Void visitEq(Exp left, Exp right) {
+		return result(eval.eq(left, right));
+	}
+
+	@Override
+	public Void visitIn(Exp element, Exp set) {
+		return result(eval.in(element, set));
+	}
+
+	@Override
+	public Void visitCardinality(Exp exp) {
+		return result(eval.cardinality(exp));
+	}
+
+	@Override
+	public Void visitIntLiteral(int value) {
+		return result(value);
+	}
+
+	@Override
+	public Void visitBoolLiteral(boolean value) {
+		return result(value);
+	}
+
+	/*** other expressions ***/
+
+	@Override
+	public Void visitIdent(Ident id) {
+		return result(eval.visitIdent(id));
+	}
+
+	@Override
+	public Void visitFst(Exp exp) {
+		return result(eval.visitFst(exp));
+	}
+
+	@Override
+	public Void visitSnd(Exp exp) {
+		return result(eval.visitSnd(exp));
+	}
+
+	@Override
+	public Void visitStringLiteral(String value) {
+		return result(eval.visitStringLiteral(value));
+	}
+
+	@Override
+	public Void visitConcat(Exp left, Exp right) {
+		return result(eval.visitConcat(left, right));
+	}
+
+	@Override
+	public Void visitPairLit(Exp left, Exp right) {
+		return result(eval.visitPairLit(left, right));
+	}
+
+	@Override
+	public Void visitSetLiteral(ExpSeq expSeq) {
+		return result(eval.visitSetLiteral(expSeq));
+	}
+
+	@Override
+	public Void visitExpSeq(List<Exp> exps) {
+		return result(eval.visitExpSeq(exps));
+	}
+
+	@Override
+	public Void visitUnion(Exp left, Exp right) {
+		return result(eval.visitUnion(left, right));
+	}
+
+	@Override
+	public Void visitIntersect(Exp left, Exp right) {
+		return result(eval.visitIntersect(left, right));
+	}
+
+	/*** statements are not expressions ***/
+
+	@Override
+	public Void visitProg(StmtSeq stmtSeq) {
+		throw new IllegalStateException();
+	}
+
+	@Override
+	public Void visitStmtSeq(List<Stmt> stmts) {
+		throw new IllegalStateException();
+	}
+
+	@Override
+	public Void visitAssignStmt(Ident ident, Exp exp) {
+		throw new IllegalStateException();
+	}
+
+	@Override
+	public Void visitDecStmt(Ident ident, Exp exp) {
+		throw new IllegalStateException();
+	}
+
+	@Override
+	public Void visitPrintStmt(Exp exp) {
+		throw new IllegalStateException();
+	}
+
+	@Override
+	public Void visitIfStmt(Exp exp, Block thenBlock, Block elseBlock) {
+		throw new IllegalStateException();
+	}
+
+	@Override
+	public Void visitBlock(StmtSeq stmtSeq) {
+		throw new IllegalStateException();
+	}
+
+	@Override
+	public Void visitWhileStmt(Exp exp, Block whileBlock) {
+		throw new IllegalStateException();
+	}
+
+}
@@ -0,0 +1,201 @@
+package visitors.evaluation;
+
+import java.util.List;
+
+import parser.ast.*;
+import visitors.Visitor;
+
+/*
+ * evaluates the right-hand sides of the assignments of Eval: in x = x \/ e
+ * the set of x is extended in place, rather than copied, when x holds its
+ * only reference, so that loops accumulating into x allocate no copies; the
+ * set is then marked unique, and it loses the mark as soon as it is stored
+ * anywhere else, by Eval or by visitIdent here; any other expression is
+ * evaluated by Eval, and strings need no update in place, since StringValue
+ * concatenates without copying
+ *
+ * the operands are evaluated and converted in the same order as by Eval, and
+ * the mark is checked once both are known, hence after e has been evaluated
+ */
+
+class UpdateEval implements Visitor<Value> {
+	private final Eval eval;
+
+	private Ident variable; // assigned by the current statement
+
+	UpdateEval(Eval eval) {
+		this.eval = eval;
+	}
+
+	Value valueOf(Ident variable, Exp exp) {
+		this.variable = variable;
+		try {
+			return exp.accept(this);
+		} finally {
+			this.variable = null;
+		}
+	}
+
+	// value which may now have other references, hence no longer updated in place
+	static Value share(Value value) {
+		if (value instanceof SetValue)
+			((SetValue) value).unique = false;
+		return value;
+	}
+
+	/*** updates ***/
+
+	@Override
+	public Value visitUnion(Exp left, Exp right) {
+		if (!left.equals(variable))
+			return eval.visitUnion(left, right);
+		SetValue set = left.accept(eval).asSet();
+		SetValue elements = right.accept(eval).asSet();
+		if (!set.unique) {
+			set = new SetValue(set);
+			set.unique = true;
+		}
+		set.add(elements);
+		return set;
+	}
+
+	/*** other expressions ***/
+
+	@Override
+	public Value visitConcat(Exp left, Exp right) {
+		return eval.visitConcat(left, right);
+	}
+
+	@Override
+	public Value visitIdent(Ident id) {
+		return share(eval.visitIdent(id));
+	}
+
+	@Override
+	public Value visitAdd(Exp left, Exp right) {
+		return eval.visitAdd(left, right);
+	}
+
+	@Override
+	public Value visitMul(Exp left, Exp right) {
+		return eval.visitMul(left, right);
+	}
+
+	@Override
+	public Value visitSign(Exp exp) {
+		return eval.visitSign(exp);
+	}
+
+	@Override
+	public Value visitNot(Exp exp) {
+		return eval.visitNot(exp);
+	}
+
+	@Override
+	public Value visitAnd(Exp left, Exp right) {
+		return eval.visitAnd(left, right);
+	}
+
+	@Override
+	public Value visitEq(Exp left, Exp right) {
+		return eval.visitEq(left, right);
+	}
+
+	@Override
+	public Value visitIn(Exp element, Exp set) {
+		return eval.visitIn(element, set);
+	}
+
+	@Override
+	public Value visitCardinality(Exp exp) {
+		return eval.visitCardinality(exp);
+	}
+
+	@Override
+	public Value visitIntLiteral(int value) {
+		return eval.visitIntLiteral(value);
+	}
+
+	@Override
+	public Value visitBoolLiteral(boolean value) {
+		return eval.visitBoolLiteral(value);
+	}
+
+	@Override
+	public Value visitFst(Exp exp) {
+		return eval.visitFst(exp);
+	}
+
+	@Override
+	public Value visitSnd(Exp exp) {
+		return eval.visitSnd(exp);
+	}
+
+	@Override
+	public Value visitStringLiteral(String value) {
+		return eval.visitStringLiteral(value);
+	}
+
+	@Override
+	public Value visitPairLit(Exp left, Exp right) {
+		return eval.visitPairLit(left, right);
+	}
+
+	@Override
+	public Value visitSetLiteral(ExpSeq expSeq) {
+		return eval.visitSetLiteral(expSeq);
+	}
+
+	@Override
+	public Value visitExpSeq(List<Exp> exps) {
+		return eval.visitExpSeq(exps);
+	}
+
+	@Override
+	public Value visitIntersect(Exp left, Exp right) {
+		return eval.visitIntersect(left, right);
+	}
+
+	/*** statements are not expressions ***/
+
+	@Override
+	public Value visitProg(StmtSeq stmtSeq) {
+		throw new IllegalStateException();
+	}
+
+	@Override
+	public Value visitStmtSeq(List<Stmt> stmts) {
+		throw new IllegalStateException();
+	}
+
+	@Override
+	public Value visitAssignStmt(Ident ident, Exp exp) {
+		throw new IllegalStateException();
+	}
+
+	@Override
+	public Value visitDecStmt(Ident ident, Exp exp) {
+		throw new IllegalStateException();
+	}
+
+	@Override
+	public Value visitPrintStmt(Exp exp) {
+		throw new IllegalStateException();
+	}
+
+	@Override
+	public Value visitIfStmt(Exp exp, Block thenBlock, Block elseBlock) {
+		throw new IllegalStateException();
+	}
+
+	@Override
+	public Value visitBlock(StmtSeq stmtSeq) {
+		throw new IllegalStateException();
+	}
+
+	@Override
+	public Value visitWhileStmt(Exp exp, Block whileBlock) {
+		throw new IllegalStateException();
+	}
+
+}
@@ -17,6 +17,10 @@ public interface Value {
 	default String asString() {
 		throw new EvaluatorException("Expecting a string");
 	}
+
+	default StringValue asStringValue() {
+		return new StringValue(asString());
+	}
 	
 	default SetValue asSet() {
 		throw new EvaluatorException("Expecting a set");
@@ -0,0 +1,105 @@
+package visitors.evaluation;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/*
+ * hash-consing of strings, pairs and sets: canonical returns the one
+ * instance kept for all the values equal to its argument, so that equal
+ * values built again and again share their memory, and equal values are
+ * found equal by identity; the instances are weakly referenced, and they
+ * leave the store once no value refers to them
+ *
+ * sets are stored only once built, since they are never changed afterwards;
+ * ints and booleans are not stored, small ones are shared by IntValue and
+ * BoolValue already, and Eval does not store concatenations, since hashing
+ * them would flatten the ropes of StringValue at each step
+ *
+ * the table is chained, and each entry is the weak reference to its
+ * instance, which costs about half as much as a WeakHashMap, whose entries
+ * would need one more weak reference as their values
+ */
+
+public class ValueStore {
+	private static final class Entry extends WeakReference<Value> {
+		final int hash;
+		Entry next;
+
+		Entry(Value value, int hash, Entry next, ReferenceQueue<Value> queue) {
+			super(value, queue);
+			this.hash = hash;
+			this.next = next;
+		}
+	}
+
+	private final ReferenceQueue<Value> collected = new ReferenceQueue<>(); // entries whose instances are gone
+	private Entry[] table = new Entry[64];
+	private int size;
+
+	private static int hash(Value value) {
+		int hash = value.hashCode();
+		return hash ^ hash >>> 16;
+	}
+
+	public Value canonical(Value value) {
+		if (value instanceof IntValue || value instanceof BoolValue)
+			return value;
+		Value instance = find(value);
+		if (instance != null)
+			return instance;
+		int hash = hash(value), i = hash & table.length - 1;
+		table[i] = new Entry(value, hash, table[i], collected);
+		if (++size > table.length / 4 * 3)
+			resize();
+		return value;
+	}
+
+	// values returned by canonical are equal if and only if they are the same instance
+	public boolean isCanonical(Value value) {
+		if (value instanceof IntValue || value instanceof BoolValue)
+			return false;
+		return find(value) == value;
+	}
+
+	// the instance equal to value, or null
+	private Value find(Value value) {
+		removeCollected();
+		int hash = hash(value);
+		for (Entry entry = table[hash & table.length - 1]; entry != null; entry = entry.next)
+			if (entry.hash == hash) {
+				Value instance = entry.get();
+				if (instance != null && instance.equals(value))
+					return instance;
+			}
+		return null;
+	}
+
+	private void removeCollected() {
+		for (Object reference; (reference = collected.poll()) != null;) {
+			Entry entry = (Entry) reference;
+			int i = entry.hash & table.length - 1;
+			if (table[i] == entry)
+				table[i] = entry.next;
+			else
+				for (Entry previous = table[i]; previous != null; previous = previous.next)
+					if (previous.next == entry) {
+						previous.next = entry.next;
+						break;
+					}
+			size--;
+		}
+	}
+
+	private void resize() {
+		Entry[] larger = new Entry[2 * table.length];
+		for (Entry entry : table)
+			while (entry != null) {
+				Entry next = entry.next;
+				int i = entry.hash & larger.length - 1;
+				entry.next = larger[i];
+				larger[i] = entry;
+				entry = next;
+			}
+		table = larger;
+	}
+}
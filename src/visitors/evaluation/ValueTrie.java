@@ -0,0 +1,363 @@
+package visitors.evaluation;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/*
+ * node of a persistent hash array mapped trie of values, laid out as IntTrie;
+ * values with the same hash code cannot be parted by their hashes, so once
+ * the bits run out they are kept together in a collision node, whose
+ * elements are searched one by one
+ */
+
+final class ValueTrie {
+	private static final int BITS = 5, MASK = (1 << BITS) - 1;
+	private static final Value[] NO_ELEMENTS = {};
+	private static final ValueTrie[] NO_NODES = {};
+
+	static final ValueTrie EMPTY = new ValueTrie(0, 0, NO_ELEMENTS, NO_NODES, 0);
+
+	private final int dataMap, nodeMap; // both 0 in collision nodes
+	private final Value[] elements;
+	private final ValueTrie[] nodes;
+	final int size;
+	private int hash; // 0 until computed
+
+	private ValueTrie(int dataMap, int nodeMap, Value[] elements, ValueTrie[] nodes, int size) {
+		this.dataMap = dataMap;
+		this.nodeMap = nodeMap;
+		this.elements = elements;
+		this.nodes = nodes;
+		this.size = size;
+	}
+
+	private static int hash(Value value) {
+		return value.hashCode() * 0x9E3779B9;
+	}
+
+	private static int position(int hash, int shift) {
+		return (hash >>> shift) & MASK;
+	}
+
+	private static int index(int map, int bit) {
+		return Integer.bitCount(map & (bit - 1));
+	}
+
+	// nodes below the last bits of the hashes
+	private static boolean collision(int shift) {
+		return shift >= Integer.SIZE;
+	}
+
+	/*** queries ***/
+
+	boolean contains(Value value) {
+		return contains(value, hash(value), 0);
+	}
+
+	private boolean contains(Value value, int hash, int shift) {
+		ValueTrie node = this;
+		while (!collision(shift)) {
+			int bit = 1 << position(hash, shift);
+			if ((node.dataMap & bit) != 0)
+				return node.elements[index(node.dataMap, bit)].equals(value);
+			if ((node.nodeMap & bit) == 0)
+				return false;
+			node = node.nodes[index(node.nodeMap, bit)];
+			shift += BITS;
+		}
+		for (Value element : node.elements)
+			if (element.equals(value))
+				return true;
+		return false;
+	}
+
+	/*** updates, which return new nodes, or this one if nothing changes ***/
+
+	ValueTrie add(Value value) {
+		return add(value, hash(value), 0);
+	}
+
+	private ValueTrie add(Value value, int hash, int shift) {
+		if (collision(shift)) {
+			if (contains(value, hash, shift))
+				return this;
+			return new ValueTrie(0, 0, insert(elements, elements.length, value), NO_NODES, size + 1);
+		}
+		int bit = 1 << position(hash, shift);
+		if ((dataMap & bit) != 0) {
+			int i = index(dataMap, bit);
+			Value element = elements[i];
+			if (element.equals(value))
+				return this;
+			ValueTrie node = pair(element, hash(element), value, hash, shift + BITS);
+			return new ValueTrie(dataMap ^ bit, nodeMap | bit, remove(elements, i),
+					insert(nodes, index(nodeMap, bit), node), size + 1);
+		}
+		if ((nodeMap & bit) != 0) {
+			int i = index(nodeMap, bit);
+			ValueTrie node = nodes[i].add(value, hash, shift + BITS);
+			if (node == nodes[i])
+				return this;
+			ValueTrie[] copy = nodes.clone();
+			copy[i] = node;
+			return new ValueTrie(dataMap, nodeMap, elements, copy, size + 1);
+		}
+		return new ValueTrie(dataMap | bit, nodeMap, insert(elements, index(dataMap, bit), value), nodes, size + 1);
+	}
+
+	/*
+	 * the elements of both tries; the subtries found in just one of them are
+	 * shared, and so is a whose elements include those of b
+	 */
+	static ValueTrie union(ValueTrie a, ValueTrie b) {
+		return a.size < b.size ? union(b, a, 0) : union(a, b, 0);
+	}
+
+	private static ValueTrie union(ValueTrie a, ValueTrie b, int shift) {
+		if (a == b || b.size == 0)
+			return a;
+		if (collision(shift)) {
+			for (Value element : b.elements)
+				a = a.add(element, 0, shift);
+			return a;
+		}
+		int dataMap = 0, nodeMap = 0, size = 0, e = 0, n = 0;
+		Value[] elements = new Value[Integer.bitCount(a.dataMap | b.dataMap)];
+		ValueTrie[] nodes = new ValueTrie[Integer.bitCount(a.nodeMap | b.nodeMap | a.dataMap & b.dataMap)];
+		boolean changed = false;
+		for (int map = a.dataMap | a.nodeMap | b.dataMap | b.nodeMap; map != 0; map &= map - 1) {
+			int bit = Integer.lowestOneBit(map);
+			ValueTrie node;
+			if ((a.nodeMap & bit) != 0) {
+				ValueTrie nodeA = a.nodes[index(a.nodeMap, bit)];
+				if ((b.nodeMap & bit) != 0)
+					node = union(nodeA, b.nodes[index(b.nodeMap, bit)], shift + BITS);
+				else if ((b.dataMap & bit) != 0) {
+					Value element = b.elements[index(b.dataMap, bit)];
+					node = nodeA.add(element, hash(element), shift + BITS);
+				} else
+					node = nodeA;
+				changed |= node != nodeA;
+			} else if ((b.nodeMap & bit) != 0) {
+				node = b.nodes[index(b.nodeMap, bit)];
+				if ((a.dataMap & bit) != 0) {
+					Value element = a.elements[index(a.dataMap, bit)];
+					node = node.add(element, hash(element), shift + BITS);
+				}
+				changed = true;
+			} else {
+				Value element;
+				if ((a.dataMap & bit) == 0) {
+					element = b.elements[index(b.dataMap, bit)];
+					changed = true;
+				} else {
+					element = a.elements[index(a.dataMap, bit)];
+					if ((b.dataMap & bit) != 0) {
+						Value other = b.elements[index(b.dataMap, bit)];
+						if (!element.equals(other)) {
+							nodeMap |= bit;
+							nodes[n++] = pair(element, hash(element), other, hash(other), shift + BITS);
+							size += 2;
+							changed = true;
+							continue;
+						}
+					}
+				}
+				dataMap |= bit;
+				elements[e++] = element;
+				size++;
+				continue;
+			}
+			nodeMap |= bit;
+			nodes[n++] = node;
+			size += node.size;
+		}
+		if (!changed)
+			return a;
+		return new ValueTrie(dataMap, nodeMap, trim(elements, e), trim(nodes, n), size);
+	}
+
+	// subtrie of two elements, as deep as their hashes are equal
+	private static ValueTrie pair(Value a, int hashA, Value b, int hashB, int shift) {
+		if (collision(shift))
+			return new ValueTrie(0, 0, new Value[] { a, b }, NO_NODES, 2);
+		int positionA = position(hashA, shift), positionB = position(hashB, shift);
+		if (positionA == positionB)
+			return new ValueTrie(0, 1 << positionA, NO_ELEMENTS,
+					new ValueTrie[] { pair(a, hashA, b, hashB, shift + BITS) }, 2);
+		Value[] elements = positionA < positionB ? new Value[] { a, b } : new Value[] { b, a };
+		return new ValueTrie(1 << positionA | 1 << positionB, 0, elements, NO_NODES, 2);
+	}
+
+	/*
+	 * the elements which are in other too; the subtries whose elements are all
+	 * kept are shared rather than rebuilt
+	 */
+	ValueTrie retain(ValueTrie other) {
+		return retain(this, other, 0);
+	}
+
+	private static ValueTrie retain(ValueTrie a, ValueTrie b, int shift) {
+		if (a == b)
+			return a;
+		int dataMap = 0, nodeMap = 0, size = 0, e = 0, n = 0;
+		Value[] elements = new Value[a.elements.length + a.nodes.length];
+		ValueTrie[] nodes = new ValueTrie[a.nodes.length];
+		boolean changed = false;
+		if (collision(shift)) {
+			for (Value element : a.elements)
+				if (b.contains(element, hash(element), shift))
+					elements[e++] = element;
+			if (e == a.elements.length)
+				return a;
+			return e == 0 ? EMPTY : new ValueTrie(0, 0, trim(elements, e), NO_NODES, e);
+		}
+		for (int map = a.dataMap | a.nodeMap; map != 0; map &= map - 1) { // in the order of the bits
+			int bit = Integer.lowestOneBit(map);
+			if ((a.dataMap & bit) != 0) {
+				Value element = a.elements[index(a.dataMap, bit)];
+				if (b.contains(element, hash(element), shift)) {
+					dataMap |= bit;
+					elements[e++] = element;
+					size++;
+				} else
+					changed = true;
+				continue;
+			}
+			ValueTrie node = a.nodes[index(a.nodeMap, bit)], kept;
+			if ((b.nodeMap & bit) != 0)
+				kept = retain(node, b.nodes[index(b.nodeMap, bit)], shift + BITS);
+			else if ((b.dataMap & bit) != 0) {
+				Value element = b.elements[index(b.dataMap, bit)];
+				kept = node.contains(element, hash(element), shift + BITS) ? EMPTY.add(element) : EMPTY;
+			} else
+				kept = EMPTY;
+			changed |= kept != node;
+			if (kept.size == 1) { // moves up as an element
+				dataMap |= bit;
+				elements[e++] = kept.elements[0];
+			} else if (kept.size > 1) {
+				nodeMap |= bit;
+				nodes[n++] = kept;
+			}
+			size += kept.size;
+		}
+		if (!changed)
+			return a;
+		if (size == 0)
+			return EMPTY;
+		return new ValueTrie(dataMap, nodeMap, trim(elements, e), trim(nodes, n), size);
+	}
+
+	/*** whole tries ***/
+
+	// the sum of the hash codes of the elements, as for any java.util.Set; cached as in IntTrie
+	@Override
+	public int hashCode() {
+		if (hash == 0) {
+			int sum = 0;
+			for (Value element : elements)
+				sum += element.hashCode();
+			for (ValueTrie node : nodes)
+				sum += node.hashCode();
+			hash = sum;
+		}
+		return hash;
+	}
+
+	// the hash code if already computed, otherwise 0
+	int knownHashCode() {
+		return hash;
+	}
+
+	// depth-first visit of the trie
+	Iterator<Value> iterator() {
+		return new Iterator<Value>() {
+			private final ValueTrie[] path = new ValueTrie[9]; // at most 7 levels and the collisions
+			private final int[] next = new int[9]; // next element, then next node, of each node of the path
+			private int depth;
+
+			{
+				path[0] = ValueTrie.this;
+				advance();
+			}
+
+			// moves to a node with elements left, if any
+			private void advance() {
+				while (depth >= 0) {
+					ValueTrie node = path[depth];
+					int i = next[depth];
+					if (i < node.elements.length)
+						return;
+					i -= node.elements.length;
+					if (i < node.nodes.length) {
+						next[depth]++;
+						path[++depth] = node.nodes[i];
+						next[depth] = 0;
+					} else
+						depth--;
+				}
+			}
+
+			@Override
+			public boolean hasNext() {
+				return depth >= 0;
+			}
+
+			@Override
+			public Value next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				Value element = path[depth].elements[next[depth]++];
+				advance();
+				return element;
+			}
+		};
+	}
+
+	/*** arrays ***/
+
+	private static Value[] insert(Value[] array, int i, Value value) {
+		Value[] copy = new Value[array.length + 1];
+		System.arraycopy(array, 0, copy, 0, i);
+		copy[i] = value;
+		System.arraycopy(array, i, copy, i + 1, array.length - i);
+		return copy;
+	}
+
+	private static Value[] remove(Value[] array, int i) {
+		Value[] copy = new Value[array.length - 1];
+		System.arraycopy(array, 0, copy, 0, i);
+		System.arraycopy(array, i + 1, copy, i, copy.length - i);
+		return copy;
+	}
+
+	private static ValueTrie[] insert(ValueTrie[] array, int i, ValueTrie node) {
+		ValueTrie[] copy = new ValueTrie[array.length + 1];
+		System.arraycopy(array, 0, copy, 0, i);
+		copy[i] = node;
+		System.arraycopy(array, i, copy, i + 1, array.length - i);
+		return copy;
+	}
+
+	private static Value[] trim(Value[] array, int length) {
+		if (length == 0)
+			return NO_ELEMENTS;
+		if (length == array.length)
+			return array;
+		Value[] copy = new Value[length];
+		System.arraycopy(array, 0, copy, 0, length);
+		return copy;
+	}
+
+	private static ValueTrie[] trim(ValueTrie[] array, int length) {
+		if (length == 0)
+			return NO_NODES;
+		if (length == array.length)
+			return array;
+		ValueTrie[] copy = new ValueTrie[length];
+		System.arraycopy(array, 0, copy, 0, length);
+		return copy;
+	}
+
+}
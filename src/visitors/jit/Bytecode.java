@@ -0,0 +1,182 @@
+package visitors.jit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * code of a method under construction; tracks the depth of the operand stack
+ * and resolves the jumps to labels; all the jumps are relative, so the code
+ * can be copied anywhere in a method
+ */
+
+class Bytecode {
+	static final int ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11, LDC = 0x12, LDC_W = 0x13, ILOAD = 0x15,
+			ALOAD = 0x19, ISTORE = 0x36, ASTORE = 0x3A, POP = 0x57, DUP = 0x59, SWAP = 0x5F, IADD = 0x60, IMUL = 0x68,
+			INEG = 0x74, IXOR = 0x82, IFEQ = 0x99, IF_ICMPNE = 0xA0, GOTO = 0xA7, RETURN = 0xB1, GETSTATIC = 0xB2,
+			PUTSTATIC = 0xB3, INVOKEVIRTUAL = 0xB6, INVOKESPECIAL = 0xB7, INVOKESTATIC = 0xB8,
+			INVOKEINTERFACE = 0xB9, NEW = 0xBB, ATHROW = 0xBF, WIDE = 0xC4;
+
+	/* position in the code; the jumps to it are patched when it is marked */
+	static class Label {
+		private int position = -1;
+		private int stack = -1; // depth of the stack when jumping here
+		private final List<Integer> jumps = new ArrayList<>(); // positions of the jump instructions
+	}
+
+	private final ClassFile classFile;
+	private final Bytes code = new Bytes();
+	private int stack;
+	private int maxStack;
+	private final Bytes handlers = new Bytes(); // exception table
+	private int handlerCount;
+
+	Bytecode(ClassFile classFile) {
+		this.classFile = classFile;
+	}
+
+	Bytes code() {
+		return code;
+	}
+
+	int length() {
+		return code.length();
+	}
+
+	int maxStack() {
+		return maxStack;
+	}
+
+	private void push(int delta) {
+		stack += delta;
+		if (stack > maxStack)
+			maxStack = stack;
+	}
+
+	/*** instructions ***/
+
+	void op(int opcode, int delta) {
+		code.u1(opcode);
+		push(delta);
+	}
+
+	void intConst(int value) {
+		if (value >= -1 && value <= 5)
+			code.u1(ICONST_0 + value);
+		else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE)
+			code.u1(BIPUSH).u1(value);
+		else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE)
+			code.u1(SIPUSH).u2(value);
+		else
+			ldc(classFile.integer(value));
+		push(1);
+	}
+
+	void stringConst(String value) {
+		ldc(classFile.string(value));
+		push(1);
+	}
+
+	private void ldc(int index) {
+		if (index <= 0xFF)
+			code.u1(LDC).u1(index);
+		else
+			code.u1(LDC_W).u2(index);
+	}
+
+	// ILOAD, ALOAD, ISTORE or ASTORE
+	void local(int opcode, int index, int delta) {
+		if (index <= 0xFF)
+			code.u1(opcode).u1(index);
+		else
+			code.u1(WIDE).u1(opcode).u2(index);
+		push(delta);
+	}
+
+	void field(int opcode, String owner, String name, String descriptor, int delta) {
+		code.u1(opcode).u2(classFile.fieldRef(owner, name, descriptor));
+		push(delta);
+	}
+
+	void method(int opcode, String owner, String name, String descriptor, int delta) {
+		code.u1(opcode).u2(classFile.methodRef(owner, name, descriptor));
+		push(delta);
+	}
+
+	// args is the number of slots of the arguments, including the receiver
+	void interfaceMethod(String owner, String name, String descriptor, int args, int delta) {
+		code.u1(INVOKEINTERFACE).u2(classFile.interfaceMethodRef(owner, name, descriptor)).u1(args).u1(0);
+		push(delta);
+	}
+
+	void type(int opcode, String internalName, int delta) {
+		code.u1(opcode).u2(classFile.classRef(internalName));
+		push(delta);
+	}
+
+	/*
+	 * the code after an ATHROW is unreachable; the stack is set as if the
+	 * thrown expression had produced its value
+	 */
+	void athrow(int stack) {
+		code.u1(ATHROW);
+		this.stack = stack;
+	}
+
+	int stack() {
+		return stack;
+	}
+
+	/*** exception handlers ***/
+
+	/* the code of [start, end) is protected by the handler at position */
+	void exceptionHandler(int start, int end, int position, String type) {
+		handlers.u2(start).u2(end).u2(position).u2(classFile.classRef(type));
+		handlerCount++;
+	}
+
+	/* at the start of a handler the stack holds just the exception */
+	void enterHandler() {
+		stack = 0;
+		push(1);
+	}
+
+	Bytes handlers() {
+		return handlers;
+	}
+
+	int handlerCount() {
+		return handlerCount;
+	}
+
+	/*** jumps ***/
+
+	void jump(int opcode, Label label, int delta) {
+		push(delta);
+		if (label.stack < 0)
+			label.stack = stack;
+		int position = code.length();
+		code.u1(opcode).u2(0);
+		if (label.position >= 0)
+			patch(position, label.position);
+		else
+			label.jumps.add(position);
+	}
+
+	/* the stack depth at a label is that of the jumps to it, if any */
+	void mark(Label label) {
+		label.position = code.length();
+		if (label.stack >= 0)
+			stack = label.stack;
+		else
+			label.stack = stack;
+		for (int jump : label.jumps)
+			patch(jump, label.position);
+	}
+
+	private void patch(int jump, int target) {
+		int offset = target - jump;
+		if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE)
+			throw new JitException("Jump too far");
+		code.patch2(jump + 1, offset);
+	}
+}
@@ -0,0 +1,73 @@
+package visitors.jit;
+
+import java.util.Arrays;
+
+/* growable array of bytes, written in the big-endian order of class files */
+
+class Bytes {
+	private byte[] bytes = new byte[64];
+	private int length;
+
+	int length() {
+		return length;
+	}
+
+	private void ensure(int more) {
+		if (length + more > bytes.length)
+			bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, length + more));
+	}
+
+	Bytes u1(int b) {
+		ensure(1);
+		bytes[length++] = (byte) b;
+		return this;
+	}
+
+	Bytes u2(int s) {
+		ensure(2);
+		bytes[length++] = (byte) (s >>> 8);
+		bytes[length++] = (byte) s;
+		return this;
+	}
+
+	Bytes u4(int i) {
+		return u2(i >>> 16).u2(i);
+	}
+
+	Bytes append(Bytes other) {
+		ensure(other.length);
+		System.arraycopy(other.bytes, 0, bytes, length, other.length);
+		length += other.length;
+		return this;
+	}
+
+	// overwrites the two bytes at position
+	void patch2(int position, int s) {
+		bytes[position] = (byte) (s >>> 8);
+		bytes[position + 1] = (byte) s;
+	}
+
+	// modified UTF-8 of class files, preceded by its length
+	Bytes utf8(String s) {
+		int start = length;
+		u2(0);
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c >= 1 && c <= 0x7F)
+				u1(c);
+			else if (c <= 0x7FF)
+				u1(0xC0 | c >> 6).u1(0x80 | c & 0x3F);
+			else
+				u1(0xE0 | c >> 12).u1(0x80 | c >> 6 & 0x3F).u1(0x80 | c & 0x3F);
+		}
+		int size = length - start - 2;
+		if (size > 0xFFFF)
+			throw new JitException("String constant too long");
+		patch2(start, size);
+		return this;
+	}
+
+	byte[] toByteArray() {
+		return Arrays.copyOf(bytes, length);
+	}
+}
@@ -0,0 +1,158 @@
+package visitors.jit;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * minimal writer of class files, enough for the classes generated by
+ * JitCompiler: a constant pool, static fields and static methods; the
+ * version is 49, which needs no StackMapTable, so that the frames of the
+ * methods need not be computed
+ */
+
+class ClassFile {
+	private static final int VERSION = 49;
+
+	static final int ACC_PUBLIC = 0x0001, ACC_PRIVATE = 0x0002, ACC_STATIC = 0x0008, ACC_FINAL = 0x0010,
+			ACC_SUPER = 0x0020;
+
+	// tags of the constants
+	private static final int UTF8 = 1, INTEGER = 3, CLASS = 7, STRING = 8, FIELDREF = 9, METHODREF = 10,
+			INTERFACE_METHODREF = 11, NAME_AND_TYPE = 12;
+
+	// equal constants are written once
+	private final Bytes pool = new Bytes();
+	private final Map<String, Integer> constants = new HashMap<>();
+	private int poolSize = 1;
+
+	private final int thisClass;
+	private final int superClass;
+	private final Bytes fields = new Bytes();
+	private int fieldCount;
+	private final Bytes methods = new Bytes();
+	private int methodCount;
+
+	ClassFile(String name) {
+		thisClass = classRef(name);
+		superClass = classRef("java/lang/Object");
+	}
+
+	/*** constant pool ***/
+
+	// index of the constant with key if already written, otherwise 0
+	private int find(String key) {
+		Integer index = constants.get(key);
+		return index == null ? 0 : index;
+	}
+
+	// records the constant just written to the pool
+	private int added(String key) {
+		if (poolSize == 0xFFFF)
+			throw new JitException("Too many constants");
+		constants.put(key, poolSize);
+		return poolSize++;
+	}
+
+	int utf8(String s) {
+		String key = "U".concat(s);
+		int index = find(key);
+		if (index != 0)
+			return index;
+		pool.u1(UTF8).utf8(s);
+		return added(key);
+	}
+
+	int integer(int value) {
+		String key = "I".concat(Integer.toString(value));
+		int index = find(key);
+		if (index != 0)
+			return index;
+		pool.u1(INTEGER).u4(value);
+		return added(key);
+	}
+
+	private int ref(int tag, String key, int utf8) {
+		int index = find(key);
+		if (index != 0)
+			return index;
+		pool.u1(tag).u2(utf8);
+		return added(key);
+	}
+
+	int string(String s) {
+		return ref(STRING, "S".concat(s), utf8(s));
+	}
+
+	int classRef(String internalName) {
+		return ref(CLASS, "C".concat(internalName), utf8(internalName));
+	}
+
+	private int memberRef(int tag, String owner, String name, String descriptor) {
+		int nameIndex = utf8(name), descriptorIndex = utf8(descriptor);
+		String key = new StringBuilder().append('N').append(name).append(' ').append(descriptor).toString();
+		int nameAndType = find(key);
+		if (nameAndType == 0) {
+			pool.u1(NAME_AND_TYPE).u2(nameIndex).u2(descriptorIndex);
+			nameAndType = added(key);
+		}
+		int classIndex = classRef(owner);
+		key = new StringBuilder().append(tag).append(owner).append('.').append(key).toString();
+		int index = find(key);
+		if (index != 0)
+			return index;
+		pool.u1(tag).u2(classIndex).u2(nameAndType);
+		return added(key);
+	}
+
+	int fieldRef(String owner, String name, String descriptor) {
+		return memberRef(FIELDREF, owner, name, descriptor);
+	}
+
+	int methodRef(String owner, String name, String descriptor) {
+		return memberRef(METHODREF, owner, name, descriptor);
+	}
+
+	int interfaceMethodRef(String owner, String name, String descriptor) {
+		return memberRef(INTERFACE_METHODREF, owner, name, descriptor);
+	}
+
+	/*** members ***/
+
+	void addField(int access, String name, String descriptor) {
+		fields.u2(access).u2(utf8(name)).u2(utf8(descriptor)).u2(0);
+		fieldCount++;
+	}
+
+	void addMethod(int access, String name, String descriptor, Bytes code, int maxStack, int maxLocals) {
+		addMethod(access, name, descriptor, code, maxStack, maxLocals, new Bytes(), 0);
+	}
+
+	void addMethod(int access, String name, String descriptor, Bytecode code, int maxLocals) {
+		addMethod(access, name, descriptor, code.code(), code.maxStack(), maxLocals, code.handlers(),
+				code.handlerCount());
+	}
+
+	private void addMethod(int access, String name, String descriptor, Bytes code, int maxStack, int maxLocals,
+			Bytes handlers, int handlerCount) {
+		if (code.length() > 0xFFFF || maxStack > 0xFFFF)
+			throw new JitException("Method too large");
+		methods.u2(access).u2(utf8(name)).u2(utf8(descriptor));
+		methods.u2(1).u2(utf8("Code")).u4(12 + code.length() + handlers.length()); // one attribute
+		methods.u2(maxStack).u2(maxLocals).u4(code.length()).append(code);
+		methods.u2(handlerCount).append(handlers);
+		methods.u2(0); // no attributes
+		methodCount++;
+	}
+
+	byte[] toByteArray() {
+		Bytes out = new Bytes();
+		out.u4(0xCAFEBABE).u2(0).u2(VERSION);
+		out.u2(poolSize).append(pool);
+		out.u2(ACC_PUBLIC | ACC_FINAL | ACC_SUPER).u2(thisClass).u2(superClass);
+		out.u2(0); // interfaces
+		out.u2(fieldCount).append(fields);
+		out.u2(methodCount).append(methods);
+		out.u2(0); // attributes
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,142 @@
+package visitors.jit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/*
+ * writes runnable jars of classes compiled by JitCompiler; besides the main
+ * class, the jar contains just the classes of the interpreter it refers to,
+ * directly or not, found by scanning the constant pools of the classes
+ */
+
+public class JarWriter {
+	private static final ClassLoader loader = JarWriter.class.getClassLoader();
+	private static final ClassLoader platform = ClassLoader.getSystemClassLoader().getParent();
+
+	private JarWriter() {
+	}
+
+	/* mainClass is the internal name of the class with bytes mainBytes */
+	public static void write(OutputStream out, String mainClass, byte[] mainBytes) throws IOException {
+		Map<String, byte[]> classes = new LinkedHashMap<>();
+		classes.put(mainClass, mainBytes);
+		Deque<byte[]> pending = new ArrayDeque<>();
+		pending.add(mainBytes);
+		while (!pending.isEmpty())
+			for (String name : references(pending.remove()))
+				if (!classes.containsKey(name)) {
+					byte[] bytes = interpreterClass(name);
+					if (bytes != null) {
+						classes.put(name, bytes);
+						pending.add(bytes);
+					}
+				}
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, mainClass.replace('/', '.'));
+		try (JarOutputStream jar = new JarOutputStream(out, manifest)) {
+			for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+				jar.putNextEntry(new JarEntry(entry.getKey() + ".class"));
+				jar.write(entry.getValue());
+				jar.closeEntry();
+			}
+		}
+	}
+
+	/* the bytes of a class of the interpreter, null for classes of the platform */
+	private static byte[] interpreterClass(String name) throws IOException {
+		String resource = name + ".class";
+		if (platform != null && platform.getResource(resource) != null)
+			return null;
+		InputStream in = loader.getResourceAsStream(resource);
+		if (in == null)
+			return null;
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			for (int read; (read = in.read(buffer)) >= 0;)
+				bytes.write(buffer, 0, read);
+			return bytes.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	/*
+	 * internal names of the classes in the constant pool of a class file,
+	 * including those in descriptors
+	 */
+	private static List<String> references(byte[] classFile) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(classFile));
+		in.skipBytes(8); // magic and version
+		int poolSize = in.readUnsignedShort();
+		List<String> names = new ArrayList<>();
+		List<String> utf8s = new ArrayList<>();
+		List<Integer> classes = new ArrayList<>();
+		for (int i = 1; i < poolSize; i++) {
+			int tag = in.readUnsignedByte();
+			switch (tag) {
+			case 1: // Utf8
+				String s = in.readUTF();
+				while (utf8s.size() < i)
+					utf8s.add(null);
+				utf8s.add(s);
+				descriptorNames(s, names);
+				break;
+			case 7: // Class
+				classes.add(in.readUnsignedShort());
+				break;
+			case 8: case 16: case 19: case 20: // String, MethodType, Module, Package
+				in.skipBytes(2);
+				break;
+			case 15: // MethodHandle
+				in.skipBytes(3);
+				break;
+			case 3: case 4: case 9: case 10: case 11: case 12: case 17: case 18:
+				in.skipBytes(4);
+				break;
+			case 5: case 6: // Long and Double take two entries
+				in.skipBytes(8);
+				i++;
+				break;
+			default:
+				throw new IOException("Unknown constant " + tag);
+			}
+		}
+		for (int index : classes) {
+			String name = utf8s.get(index);
+			if (name.charAt(0) != '[') // arrays are found as descriptors
+				names.add(name);
+		}
+		return names;
+	}
+
+	// the names in the L...; parts of a descriptor; other strings may add names
+	// of classes which do not exist, which are then ignored
+	private static void descriptorNames(String s, List<String> names) {
+		for (int start = s.indexOf('L'); start >= 0; start = s.indexOf('L', start + 1)) {
+			int end = s.indexOf(';', start);
+			if (end < 0)
+				return;
+			String name = s.substring(start + 1, end);
+			if (name.indexOf('(') < 0 && name.indexOf(')') < 0 && name.indexOf('[') < 0) {
+				names.add(name);
+				start = end;
+			}
+		}
+	}
+}
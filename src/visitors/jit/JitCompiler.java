@@ -0,0 +1,602 @@
+package visitors.jit;
+
+import static visitors.jit.Bytecode.*;
+import static visitors.jit.ClassFile.*;
+import static visitors.typechecking.PrimtType.*;
+import static visitors.typechecking.StringType.STRING;
+
+import java.io.PrintWriter;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import parser.ast.*;
+import visitors.Visitor;
+import visitors.compilation.Code;
+import visitors.evaluation.Value;
+import visitors.jit.Bytecode.Label;
+import visitors.typechecking.PairType;
+import visitors.typechecking.SetType;
+import visitors.typechecking.Type;
+
+/*
+ * compiles programs resolved by visitors.resolution.Resolver and checked by
+ * visitors.typechecking.TypeCheck into a class, loaded as a hidden class;
+ * the static types select the representation of each value: ints and
+ * booleans are JVM ints, strings are Java strings, and only sets and pairs,
+ * and the values stored in them, are objects of visitors.evaluation
+ *
+ * the variables of the program frame are static fields, the others are
+ * locals; each declaration has its own field or local, so that its type is
+ * fixed; each top-level statement is compiled separately, and consecutive
+ * statements are grouped into methods small enough to be compiled by HotSpot
+ */
+
+public class JitCompiler implements Visitor<Void> {
+	private static final String NAME = "visitors/jit/Program";
+	private static final int METHOD_SIZE = 8000; // HotSpot does not compile larger methods
+
+	private static final String VALUE = "visitors/evaluation/Value", SET = "visitors/evaluation/SetValue",
+			PAIR = "visitors/evaluation/PairValue", SUPPORT = "visitors/evaluation/JitSupport",
+			JAVA_STRING = "java/lang/String", PRINT_WRITER = "java/io/PrintWriter";
+
+	private final Map<Exp, Type> types;
+	private String name = NAME; // of the generated class
+	private ClassFile classFile;
+	private Bytecode code; // of the current top-level statement
+	private boolean topLevel;
+
+	/* storage of each variable in scope, by frame and slot */
+	private final List<List<Variable>> frames = new ArrayList<>();
+	private int fields;
+	private int locals;
+	private int maxLocals;
+
+	/* compiled top-level statements */
+	private final List<Bytecode> chunks = new ArrayList<>();
+	private final List<Integer> chunkLocals = new ArrayList<>();
+
+	public JitCompiler(Map<Exp, Type> types) {
+		this.types = types;
+	}
+
+	/* storage of a variable, with the type of its declaration */
+	private class Variable {
+		final Type type;
+		final String field; // null for locals
+		final int local;
+
+		Variable(Type type, String field, int local) {
+			this.type = type;
+			this.field = field;
+			this.local = local;
+		}
+
+		void load(Bytecode code) {
+			if (field != null)
+				code.field(GETSTATIC, name, field, descriptor(type), 1);
+			else
+				code.local(isObject(type) ? ALOAD : ILOAD, local, 1);
+		}
+
+		void store(Bytecode code) {
+			if (field != null)
+				code.field(PUTSTATIC, name, field, descriptor(type), -1);
+			else
+				code.local(isObject(type) ? ASTORE : ISTORE, local, -1);
+		}
+	}
+
+	/*** representation of the values ***/
+
+	private static boolean isObject(Type type) {
+		return type != INT && type != BOOL;
+	}
+
+	private static String descriptor(Type type) {
+		if (type == INT)
+			return "I";
+		if (type == BOOL)
+			return "Z";
+		if (type == STRING)
+			return "Ljava/lang/String;";
+		if (type instanceof SetType)
+			return "Lvisitors/evaluation/SetValue;";
+		if (type instanceof PairType)
+			return "Lvisitors/evaluation/PairValue;";
+		throw new JitException("Unknown type " + type);
+	}
+
+	// converts the value on the stack to a Value
+	private void box(Type type) {
+		if (type == INT)
+			code.method(INVOKESTATIC, SUPPORT, "box", "(I)Lvisitors/evaluation/Value;", 0);
+		else if (type == BOOL)
+			code.method(INVOKESTATIC, SUPPORT, "box", "(Z)Lvisitors/evaluation/Value;", 0);
+		else if (type == STRING)
+			code.method(INVOKESTATIC, SUPPORT, "box", "(Ljava/lang/String;)Lvisitors/evaluation/Value;", 0);
+	}
+
+	// converts the Value on the stack to the representation of type
+	private void unbox(Type type) {
+		if (type == INT)
+			code.interfaceMethod(VALUE, "asInt", "()I", 1, 0);
+		else if (type == BOOL)
+			code.interfaceMethod(VALUE, "asBool", "()Z", 1, 0);
+		else if (type == STRING)
+			code.interfaceMethod(VALUE, "asString", "()Ljava/lang/String;", 1, 0);
+		else if (type instanceof SetType)
+			code.interfaceMethod(VALUE, "asSet", "()Lvisitors/evaluation/SetValue;", 1, 0);
+		else
+			code.interfaceMethod(VALUE, "asPair", "()Lvisitors/evaluation/PairValue;", 1, 0);
+	}
+
+	/* pushes the value of exp and returns its type */
+	private Type compile(Exp exp) {
+		Type type = types.get(exp);
+		if (type == null)
+			throw new JitException("Unchecked expression " + exp);
+		exp.accept(this);
+		return type;
+	}
+
+	/*** compilation and loading ***/
+
+	/* the bytes of the class of prog, with the method public static void run(PrintWriter) */
+	private byte[] generate(Prog prog, boolean withMain) {
+		classFile = new ClassFile(name);
+		classFile.addField(ACC_PRIVATE | ACC_STATIC, "out", "Ljava/io/PrintWriter;");
+		prog.accept(this);
+		Bytecode run = new Bytecode(classFile);
+		run.local(ALOAD, 0, 1);
+		run.field(PUTSTATIC, name, "out", "Ljava/io/PrintWriter;", -1);
+		int methods = 0;
+		for (int first = 0, last; first < chunks.size(); first = last) {
+			Bytes body = new Bytes();
+			int maxStack = 0, maxLocals = 0;
+			last = first;
+			do {
+				Bytecode chunk = chunks.get(last);
+				body.append(chunk.code());
+				maxStack = Math.max(maxStack, chunk.maxStack());
+				maxLocals = Math.max(maxLocals, chunkLocals.get(last));
+				last++;
+			} while (last < chunks.size() && body.length() + chunks.get(last).length() < METHOD_SIZE);
+			body.u1(RETURN);
+			String method = "c".concat(Integer.toString(methods++));
+			classFile.addMethod(ACC_PRIVATE | ACC_STATIC, method, "()V", body, maxStack, maxLocals);
+			run.method(INVOKESTATIC, name, method, "()V", 0);
+		}
+		run.op(RETURN, 0);
+		classFile.addMethod(ACC_PUBLIC | ACC_STATIC, "run", "(Ljava/io/PrintWriter;)V", run, 1);
+		if (withMain)
+			addMain();
+		return classFile.toByteArray();
+	}
+
+	/*
+	 * public static void main(String[]) runs the program on the standard
+	 * output and reports dynamic errors as interpreter.Main does
+	 */
+	private void addMain() {
+		Bytecode main = new Bytecode(classFile);
+		main.type(NEW, PRINT_WRITER, 1);
+		main.op(DUP, 1);
+		main.field(GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;", 1);
+		main.intConst(1);
+		main.method(INVOKESPECIAL, PRINT_WRITER, "<init>", "(Ljava/io/OutputStream;Z)V", -3);
+		main.method(INVOKESTATIC, name, "run", "(Ljava/io/PrintWriter;)V", -1);
+		int end = main.length();
+		main.op(RETURN, 0);
+		int handler = main.length();
+		main.enterHandler();
+		main.method(INVOKEVIRTUAL, "java/lang/Throwable", "getMessage", "()Ljava/lang/String;", 0);
+		main.method(INVOKESTATIC, JAVA_STRING, "valueOf", "(Ljava/lang/Object;)Ljava/lang/String;", 0);
+		main.stringConst("Dynamic error: ");
+		main.op(SWAP, 0);
+		main.method(INVOKEVIRTUAL, JAVA_STRING, "concat", "(Ljava/lang/String;)Ljava/lang/String;", -1);
+		main.field(GETSTATIC, "java/lang/System", "err", "Ljava/io/PrintStream;", 1);
+		main.op(SWAP, 0);
+		main.method(INVOKEVIRTUAL, "java/io/PrintStream", "println", "(Ljava/lang/String;)V", -2);
+		main.op(RETURN, 0);
+		main.exceptionHandler(0, end, handler, "visitors/evaluation/EvaluatorException");
+		classFile.addMethod(ACC_PUBLIC | ACC_STATIC, "main", "([Ljava/lang/String;)V", main, 1);
+	}
+
+	/*
+	 * compiles prog into the bytes of a class with the given internal name,
+	 * runnable by itself with the classes of visitors.evaluation it refers to
+	 */
+	public byte[] compileClass(Prog prog, String name) {
+		this.name = name;
+		return generate(prog, true);
+	}
+
+	/* compiles prog into code which prints to printWriter */
+	public Code compile(Prog prog, PrintWriter printWriter) {
+		MethodHandle run;
+		try {
+			Lookup lookup = define(generate(prog, false));
+			run = lookup.findStatic(lookup.lookupClass(), "run",
+					MethodType.methodType(void.class, PrintWriter.class));
+		} catch (ReflectiveOperationException | LinkageError e) {
+			throw new JitException(e);
+		}
+		return new Code() {
+			@Override
+			public Value run() {
+				try {
+					run.invokeExact(printWriter);
+				} catch (RuntimeException | Error e) {
+					throw e;
+				} catch (Throwable e) { // never thrown by the generated code
+					throw new UndeclaredThrowableException(e);
+				}
+				return null;
+			}
+		};
+	}
+
+	/*
+	 * defines a hidden class with MethodHandles.Lookup.defineHiddenClass,
+	 * through reflection since it needs Java 15; on older versions the class
+	 * is defined, and linked, by a class loader of its own
+	 */
+	private static Lookup define(byte[] bytes) throws ReflectiveOperationException {
+		Class<?> option;
+		try {
+			option = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+		} catch (ClassNotFoundException e) {
+			Class<?> loaded = Class.forName(NAME.replace('/', '.'), true, new Loader(bytes));
+			return MethodHandles.publicLookup().in(loaded);
+		}
+		Object noOptions = Array.newInstance(option, 0);
+		Method defineHiddenClass = Lookup.class.getMethod("defineHiddenClass", byte[].class, boolean.class,
+				noOptions.getClass());
+		try {
+			return (Lookup) defineHiddenClass.invoke(MethodHandles.lookup(), bytes, true, noOptions);
+		} catch (InvocationTargetException e) { // the class is not valid
+			throw new JitException(e.getCause());
+		}
+	}
+
+	private static class Loader extends ClassLoader {
+		private final byte[] bytes;
+
+		Loader(byte[] bytes) {
+			super(JitCompiler.class.getClassLoader());
+			this.bytes = bytes;
+		}
+
+		@Override
+		protected Class<?> findClass(String name) throws ClassNotFoundException {
+			if (!name.equals(NAME.replace('/', '.')))
+				throw new ClassNotFoundException(name);
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+
+	/*** programs and statements ***/
+
+	@Override
+	public Void visitProg(StmtSeq stmtSeq) {
+		frames.add(new ArrayList<>());
+		topLevel = true;
+		stmtSeq.accept(this);
+		return null;
+	}
+
+	@Override
+	public Void visitStmtSeq(List<Stmt> stmts) {
+		if (!topLevel) {
+			for (Stmt stmt : stmts)
+				stmt.accept(this);
+			return null;
+		}
+		topLevel = false;
+		for (Stmt stmt : stmts) {
+			code = new Bytecode(classFile);
+			locals = maxLocals = 0;
+			stmt.accept(this);
+			chunks.add(code);
+			chunkLocals.add(maxLocals);
+		}
+		return null;
+	}
+
+	private Variable variable(Ident ident) {
+		ResolvedIdent resolved = (ResolvedIdent) ident;
+		if (resolved.getDepth() == ResolvedIdent.UNDECLARED)
+			throw new JitException("Undeclared variable " + ident.getName());
+		return frames.get(frames.size() - 1 - resolved.getDepth()).get(resolved.getSlot());
+	}
+
+	@Override
+	public Void visitAssignStmt(Ident ident, Exp exp) {
+		compile(exp);
+		variable(ident).store(code);
+		return null;
+	}
+
+	@Override
+	public Void visitDecStmt(Ident ident, Exp exp) {
+		Type type = compile(exp);
+		Variable variable;
+		if (frames.size() == 1) {
+			String field = "v".concat(Integer.toString(fields++));
+			classFile.addField(ACC_PRIVATE | ACC_STATIC, field, descriptor(type));
+			variable = new Variable(type, field, 0);
+		} else {
+			if (locals == 0xFFFF)
+				throw new JitException("Too many variables");
+			variable = new Variable(type, null, locals++);
+			maxLocals = Math.max(maxLocals, locals);
+		}
+		List<Variable> frame = frames.get(frames.size() - 1);
+		int slot = ((ResolvedIdent) ident).getSlot();
+		while (frame.size() <= slot)
+			frame.add(null);
+		frame.set(slot, variable);
+		variable.store(code);
+		return null;
+	}
+
+	@Override
+	public Void visitPrintStmt(Exp exp) {
+		code.field(GETSTATIC, name, "out", "Ljava/io/PrintWriter;", 1);
+		Type type = compile(exp);
+		String descriptor = type == INT ? "(I)V" : type == BOOL ? "(Z)V" : "(Ljava/lang/Object;)V";
+		code.method(INVOKEVIRTUAL, PRINT_WRITER, "println", descriptor, -2);
+		return null;
+	}
+
+	@Override
+	public Void visitIfStmt(Exp exp, Block thenBlock, Block elseBlock) {
+		Label elseLabel = new Label(), end = new Label();
+		compile(exp);
+		code.jump(IFEQ, elseLabel, -1);
+		thenBlock.accept(this);
+		code.jump(GOTO, end, 0);
+		code.mark(elseLabel);
+		if (elseBlock != null)
+			elseBlock.accept(this);
+		code.mark(end);
+		return null;
+	}
+
+	// the locals of a block are reused after it
+	@Override
+	public Void visitBlock(StmtSeq stmtSeq) {
+		int outerLocals = locals;
+		frames.add(new ArrayList<>());
+		stmtSeq.accept(this);
+		frames.remove(frames.size() - 1);
+		locals = outerLocals;
+		return null;
+	}
+
+	@Override
+	public Void visitWhileStmt(Exp exp, Block whileBlock) {
+		Label cond = new Label(), end = new Label();
+		code.mark(cond);
+		compile(exp);
+		code.jump(IFEQ, end, -1);
+		whileBlock.accept(this);
+		code.jump(GOTO, cond, 0);
+		code.mark(end);
+		return null;
+	}
+
+	/*** variables and literals ***/
+
+	@Override
+	public Void visitIdent(Ident id) {
+		variable(id).load(code);
+		return null;
+	}
+
+	@Override
+	public Void visitIntLiteral(int value) {
+		code.intConst(value);
+		return null;
+	}
+
+	@Override
+	public Void visitBoolLiteral(boolean value) {
+		code.intConst(value ? 1 : 0);
+		return null;
+	}
+
+	@Override
+	public Void visitStringLiteral(String value) {
+		code.stringConst(value);
+		return null;
+	}
+
+	@Override
+	public Void visitSetLiteral(ExpSeq expSeq) {
+		code.type(NEW, SET, 1);
+		code.op(DUP, 1);
+		code.method(INVOKESPECIAL, SET, "<init>", "()V", -1);
+		expSeq.accept(this);
+		return null;
+	}
+
+	// elements are evaluated and added from the last one, as by Eval
+	@Override
+	public Void visitExpSeq(List<Exp> exps) {
+		for (int i = exps.size() - 1; i >= 0; i--) {
+			code.op(DUP, 1);
+			box(compile(exps.get(i)));
+			code.method(INVOKEVIRTUAL, SET, "add", "(Lvisitors/evaluation/Value;)Lvisitors/evaluation/Value;", -1);
+			code.op(POP, -1);
+		}
+		return null;
+	}
+
+	@Override
+	public Void visitPairLit(Exp left, Exp right) {
+		code.type(NEW, PAIR, 1);
+		code.op(DUP, 1);
+		box(compile(left));
+		box(compile(right));
+		code.method(INVOKESPECIAL, PAIR, "<init>", "(Lvisitors/evaluation/Value;Lvisitors/evaluation/Value;)V", -3);
+		return null;
+	}
+
+	/*** operators ***/
+
+	@Override
+	public Void visitAdd(Exp left, Exp right) {
+		compile(left);
+		compile(right);
+		code.op(IADD, -1);
+		return null;
+	}
+
+	@Override
+	public Void visitMul(Exp left, Exp right) {
+		compile(left);
+		compile(right);
+		code.op(IMUL, -1);
+		return null;
+	}
+
+	@Override
+	public Void visitSign(Exp exp) {
+		compile(exp);
+		code.op(INEG, 0);
+		return null;
+	}
+
+	@Override
+	public Void visitNot(Exp exp) {
+		compile(exp);
+		code.intConst(1);
+		code.op(IXOR, -1);
+		return null;
+	}
+
+	@Override
+	public Void visitAnd(Exp left, Exp right) {
+		Label isFalse = new Label(), end = new Label();
+		compile(left);
+		code.jump(IFEQ, isFalse, -1);
+		compile(right);
+		code.jump(GOTO, end, 0);
+		code.mark(isFalse);
+		code.intConst(0);
+		code.mark(end);
+		return null;
+	}
+
+	@Override
+	public Void visitEq(Exp left, Exp right) {
+		Type type = compile(left);
+		compile(right);
+		if (isObject(type)) {
+			code.method(INVOKEVIRTUAL, type == STRING ? JAVA_STRING : "java/lang/Object", "equals",
+					"(Ljava/lang/Object;)Z", -1);
+			return null;
+		}
+		Label notEqual = new Label(), end = new Label();
+		code.jump(IF_ICMPNE, notEqual, -2);
+		code.intConst(1);
+		code.jump(GOTO, end, 0);
+		code.mark(notEqual);
+		code.intConst(0);
+		code.mark(end);
+		return null;
+	}
+
+	/*
+	 * the type checker accepts operands of any type, provided it is the same;
+	 * as by Eval, operands which are not strings fail after the left one is
+	 * evaluated
+	 */
+	@Override
+	public Void visitConcat(Exp left, Exp right) {
+		if (compile(left) == STRING) {
+			compile(right);
+			code.method(INVOKEVIRTUAL, JAVA_STRING, "concat", "(Ljava/lang/String;)Ljava/lang/String;", -1);
+			return null;
+		}
+		int stack = code.stack();
+		code.op(POP, -1);
+		code.method(INVOKESTATIC, SUPPORT, "notAString", "()Lvisitors/evaluation/EvaluatorException;", 1);
+		code.athrow(stack);
+		return null;
+	}
+
+	/*
+	 * the set is evaluated first and the element only if the set is not empty,
+	 * as by Eval
+	 */
+	@Override
+	public Void visitIn(Exp element, Exp set) {
+		Label empty = new Label(), end = new Label();
+		compile(set);
+		code.op(DUP, 1);
+		code.method(INVOKEVIRTUAL, SET, "dim", "()I", 0);
+		code.jump(IFEQ, empty, -1);
+		box(compile(element));
+		code.method(INVOKESTATIC, SUPPORT, "in", "(Lvisitors/evaluation/SetValue;Lvisitors/evaluation/Value;)Z", -1);
+		code.jump(GOTO, end, 0);
+		code.mark(empty);
+		code.op(POP, -1);
+		code.intConst(0);
+		code.mark(end);
+		return null;
+	}
+
+	@Override
+	public Void visitCardinality(Exp exp) {
+		if (compile(exp) == STRING)
+			code.method(INVOKEVIRTUAL, JAVA_STRING, "length", "()I", 0);
+		else
+			code.method(INVOKEVIRTUAL, SET, "dim", "()I", 0);
+		return null;
+	}
+
+	@Override
+	public Void visitUnion(Exp left, Exp right) {
+		compile(left);
+		compile(right);
+		code.method(INVOKESTATIC, SUPPORT, "union",
+				"(Lvisitors/evaluation/SetValue;Lvisitors/evaluation/SetValue;)Lvisitors/evaluation/SetValue;", -1);
+		return null;
+	}
+
+	@Override
+	public Void visitIntersect(Exp left, Exp right) {
+		compile(left);
+		compile(right);
+		code.method(INVOKESTATIC, SUPPORT, "intersect",
+				"(Lvisitors/evaluation/SetValue;Lvisitors/evaluation/SetValue;)Lvisitors/evaluation/SetValue;", -1);
+		return null;
+	}
+
+	@Override
+	public Void visitFst(Exp exp) {
+		Type type = compile(exp).getFstPairType();
+		code.method(INVOKEVIRTUAL, PAIR, "getFstVal", "()Lvisitors/evaluation/Value;", 0);
+		unbox(type);
+		return null;
+	}
+
+	@Override
+	public Void visitSnd(Exp exp) {
+		Type type = compile(exp).getSndPairType();
+		code.method(INVOKEVIRTUAL, PAIR, "getSndVal", "()Lvisitors/evaluation/Value;", 0);
+		unbox(type);
+		return null;
+	}
+}
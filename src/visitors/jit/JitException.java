@@ -0,0 +1,14 @@
+package visitors.jit;
+
+/* the program cannot be compiled to bytecode, or its class cannot be loaded */
+
+public class JitException extends RuntimeException {
+
+	public JitException(String message) {
+		super(message);
+	}
+
+	public JitException(Throwable cause) {
+		super(cause);
+	}
+}
@@ -0,0 +1,248 @@
+package visitors.resolution;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import parser.ast.*;
+import visitors.Visitor;
+
+/*
+ * static resolution of the variables: returns a copy of the program where each
+ * occurrence of a variable is a ResolvedIdent holding the depth of the scope
+ * of its declaration, relative to the scope of the occurrence, and its slot in
+ * the frame of that scope; the scopes are the program and the blocks, as for
+ * the environments of the visitors
+ * 
+ * blocks without declarations are not scopes: they become ScopeFreeBlocks
+ * and are not counted in the depths
+ * 
+ * variables which are not in scope are not reported here, but by the
+ * environment when they are used, so that errors are found in the same order
+ * as before
+ */
+
+public class Resolver implements Visitor<AST> {
+
+	// slots of the variables declared so far in each scope, the most nested first
+	private final LinkedList<Map<Ident, Integer>> scopeChain = new LinkedList<>();
+
+	/*
+	 * set by visitBlock for the sequence of its statements, which is the first
+	 * to see whether there are declarations, and cleared by that sequence if
+	 * the block needs no scope
+	 */
+	private boolean blockScope;
+
+	public Prog resolve(Prog prog) {
+		return (Prog) prog.accept(this);
+	}
+
+	private Exp resolveExp(Exp exp) {
+		return (Exp) exp.accept(this);
+	}
+
+	private StmtSeq resolveStmtSeq(StmtSeq stmtSeq) {
+		return (StmtSeq) stmtSeq.accept(this);
+	}
+
+	private Block resolveBlock(Block block) {
+		return (Block) block.accept(this);
+	}
+
+	private ResolvedIdent occurrence(Ident id) {
+		int depth = 0;
+		for (Map<Ident, Integer> scope : scopeChain) {
+			Integer slot = scope.get(id);
+			if (slot != null)
+				return new ResolvedIdent(id.getName(), depth, slot);
+			depth++;
+		}
+		return new ResolvedIdent(id.getName(), ResolvedIdent.UNDECLARED, 0);
+	}
+
+	/*** programs and statements ***/
+
+	@Override
+	public AST visitProg(StmtSeq stmtSeq) {
+		scopeChain.addFirst(new HashMap<>());
+		StmtSeq resolved = resolveStmtSeq(stmtSeq);
+		scopeChain.removeFirst();
+		return new ProgClass(resolved);
+	}
+
+	@Override
+	public AST visitStmtSeq(List<Stmt> stmts) {
+		boolean scope = blockScope && declares(stmts);
+		if (scope)
+			scopeChain.addFirst(new HashMap<>());
+		List<Stmt> resolved = new ArrayList<>(stmts.size());
+		for (Stmt stmt : stmts)
+			resolved.add((Stmt) stmt.accept(this));
+		if (scope)
+			scopeChain.removeFirst();
+		blockScope = scope; // nested blocks have been resolved, the flag is for visitBlock
+		return new StmtList(resolved);
+	}
+
+	private static boolean declares(List<Stmt> stmts) {
+		for (Stmt stmt : stmts)
+			if (stmt instanceof DecStmt)
+				return true;
+		return false;
+	}
+
+	@Override
+	public AST visitAssignStmt(Ident ident, Exp exp) {
+		return new AssignStmt(occurrence(ident), resolveExp(exp));
+	}
+
+	/*
+	 * the expression is resolved before the declaration, which is visible only
+	 * to the following statements; a variable declared again in the same scope
+	 * keeps its slot
+	 */
+	@Override
+	public AST visitDecStmt(Ident ident, Exp exp) {
+		Exp resolved = resolveExp(exp);
+		Map<Ident, Integer> scope = scopeChain.getFirst();
+		Integer slot = scope.get(ident);
+		if (slot == null)
+			scope.put(ident, slot = scope.size());
+		return new DecStmt(new ResolvedIdent(ident.getName(), 0, slot), resolved);
+	}
+
+	@Override
+	public AST visitPrintStmt(Exp exp) {
+		return new PrintStmt(resolveExp(exp));
+	}
+
+	@Override
+	public AST visitIfStmt(Exp exp, Block thenBlock, Block elseBlock) {
+		Exp resolved = resolveExp(exp);
+		Block thenResolved = resolveBlock(thenBlock);
+		if (elseBlock == null)
+			return new IfStmt(resolved, thenResolved);
+		return new IfStmt(resolved, thenResolved, resolveBlock(elseBlock));
+	}
+
+	@Override
+	public AST visitBlock(StmtSeq stmtSeq) {
+		blockScope = true;
+		StmtSeq resolved = resolveStmtSeq(stmtSeq);
+		return blockScope ? new Block(resolved) : new ScopeFreeBlock(resolved);
+	}
+
+	@Override
+	public AST visitWhileStmt(Exp exp, Block whileBlock) {
+		Exp resolved = resolveExp(exp);
+		return new WhileStmt(resolved, resolveBlock(whileBlock));
+	}
+
+	/*** expressions ***/
+
+	@Override
+	public AST visitIdent(Ident id) {
+		return occurrence(id);
+	}
+
+	@Override
+	public AST visitIntLiteral(int value) {
+		return new IntLiteral(value);
+	}
+
+	@Override
+	public AST visitBoolLiteral(boolean value) {
+		return new BoolLiteral(value);
+	}
+
+	@Override
+	public AST visitStringLiteral(String value) {
+		return new StringLiteral(value);
+	}
+
+	@Override
+	public AST visitExpSeq(List<Exp> exps) {
+		List<Exp> resolved = new ArrayList<>(exps.size());
+		for (Exp exp : exps)
+			resolved.add(resolveExp(exp));
+		return new ExpList(resolved);
+	}
+
+	@Override
+	public AST visitSetLiteral(ExpSeq expSeq) {
+		return new SetLiteral((ExpSeq) expSeq.accept(this));
+	}
+
+	@Override
+	public AST visitPairLit(Exp left, Exp right) {
+		return new PairLit(resolveExp(left), resolveExp(right));
+	}
+
+	@Override
+	public AST visitAdd(Exp left, Exp right) {
+		return new Add(resolveExp(left), resolveExp(right));
+	}
+
+	@Override
+	public AST visitMul(Exp left, Exp right) {
+		return new Mul(resolveExp(left), resolveExp(right));
+	}
+
+	@Override
+	public AST visitAnd(Exp left, Exp right) {
+		return new And(resolveExp(left), resolveExp(right));
+	}
+
+	@Override
+	public AST visitEq(Exp left, Exp right) {
+		return new Eq(resolveExp(left), resolveExp(right));
+	}
+
+	@Override
+	public AST visitConcat(Exp left, Exp right) {
+		return new Concat(resolveExp(left), resolveExp(right));
+	}
+
+	@Override
+	public AST visitIn(Exp left, Exp right) {
+		return new In(resolveExp(left), resolveExp(right));
+	}
+
+	@Override
+	public AST visitUnion(Exp left, Exp right) {
+		return new Union(resolveExp(left), resolveExp(right));
+	}
+
+	@Override
+	public AST visitIntersect(Exp left, Exp right) {
+		return new Intersect(resolveExp(left), resolveExp(right));
+	}
+
+	@Override
+	public AST visitSign(Exp exp) {
+		return new Sign(resolveExp(exp));
+	}
+
+	@Override
+	public AST visitNot(Exp exp) {
+		return new Not(resolveExp(exp));
+	}
+
+	@Override
+	public AST visitFst(Exp exp) {
+		return new Fst(resolveExp(exp));
+	}
+
+	@Override
+	public AST visitSnd(Exp exp) {
+		return new Snd(resolveExp(exp));
+	}
+
+	@Override
+	public AST visitCardinality(Exp exp) {
+		return new Cardinality(resolveExp(exp));
+	}
+}
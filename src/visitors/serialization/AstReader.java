@@ -0,0 +1,179 @@
+package visitors.serialization;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import parser.SymbolTable;
+import parser.ast.*;
+
+/*
+ * reads an AST written by AstWriter; identifiers are interned as the parser
+ * does, so the tree is indistinguishable from the one built from the source
+ */
+
+public class AstReader {
+
+	private final DataInputStream in;
+	private final SymbolTable symbols = new SymbolTable();
+	private final List<Ident> idents = new ArrayList<>();
+
+	public AstReader(DataInputStream in) {
+		this.in = in;
+	}
+
+	private static IOException corrupted() {
+		return new IOException("Corrupted AST");
+	}
+
+	/*** decoding of the values ***/
+
+	private int readNat() throws IOException {
+		int n = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.readUnsignedByte();
+			n |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return n;
+		}
+		throw corrupted();
+	}
+
+	private int readInt() throws IOException {
+		int n = readNat();
+		return n >>> 1 ^ -(n & 1);
+	}
+
+	private String readString() throws IOException {
+		byte[] bytes = new byte[readNat()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private Tag readTag() throws IOException {
+		Tag tag = Tag.of(readNat());
+		if (tag == null)
+			throw corrupted();
+		return tag;
+	}
+
+	/*** nodes ***/
+
+	public Prog readProg() throws IOException {
+		if (readTag() != Tag.PROG)
+			throw corrupted();
+		return new ProgClass(readStmtSeq());
+	}
+
+	private StmtSeq readStmtSeq() throws IOException {
+		if (readTag() != Tag.STMT_SEQ)
+			throw corrupted();
+		int size = readNat();
+		List<Stmt> stmts = new ArrayList<>();
+		for (int i = 0; i < size; i++)
+			stmts.add(readStmt());
+		return new StmtList(stmts);
+	}
+
+	private Block readBlock() throws IOException {
+		if (readTag() != Tag.BLOCK)
+			throw corrupted();
+		return new Block(readStmtSeq());
+	}
+
+	private Stmt readStmt() throws IOException {
+		switch (readTag()) {
+		case ASSIGN:
+			return new AssignStmt(readIdent(), readExp());
+		case DEC:
+			return new DecStmt(readIdent(), readExp());
+		case PRINT:
+			return new PrintStmt(readExp());
+		case IF:
+			return new IfStmt(readExp(), readBlock());
+		case IF_ELSE:
+			return new IfStmt(readExp(), readBlock(), readBlock());
+		case WHILE:
+			return new WhileStmt(readExp(), readBlock());
+		default:
+			throw corrupted();
+		}
+	}
+
+	private Ident readIdent() throws IOException {
+		return toIdent(readTag());
+	}
+
+	private Ident toIdent(Tag tag) throws IOException {
+		if (tag == Tag.NEW_IDENT) {
+			Ident ident = symbols.intern(readString());
+			idents.add(ident);
+			return ident;
+		}
+		if (tag == Tag.IDENT) {
+			int index = readNat();
+			if (index < idents.size())
+				return idents.get(index);
+		}
+		throw corrupted();
+	}
+
+	private ExpSeq readExpSeq() throws IOException {
+		if (readTag() != Tag.EXP_SEQ)
+			throw corrupted();
+		int size = readNat();
+		List<Exp> exps = new ArrayList<>();
+		for (int i = 0; i < size; i++)
+			exps.add(readExp());
+		return new ExpList(exps);
+	}
+
+	private Exp readExp() throws IOException {
+		Tag tag = readTag();
+		switch (tag) {
+		case INT:
+			return new IntLiteral(readInt());
+		case BOOL:
+			return new BoolLiteral(readNat() != 0);
+		case STRING:
+			return new StringLiteral(readString());
+		case IDENT:
+		case NEW_IDENT:
+			return toIdent(tag);
+		case SET:
+			return new SetLiteral(readExpSeq());
+		case PAIR:
+			return new PairLit(readExp(), readExp());
+		case ADD:
+			return new Add(readExp(), readExp());
+		case MUL:
+			return new Mul(readExp(), readExp());
+		case AND:
+			return new And(readExp(), readExp());
+		case EQ:
+			return new Eq(readExp(), readExp());
+		case CONCAT:
+			return new Concat(readExp(), readExp());
+		case IN:
+			return new In(readExp(), readExp());
+		case UNION:
+			return new Union(readExp(), readExp());
+		case INTERSECT:
+			return new Intersect(readExp(), readExp());
+		case SIGN:
+			return new Sign(readExp());
+		case NOT:
+			return new Not(readExp());
+		case FST:
+			return new Fst(readExp());
+		case SND:
+			return new Snd(readExp());
+		case CARDINALITY:
+			return new Cardinality(readExp());
+		default:
+			throw corrupted();
+		}
+	}
+}
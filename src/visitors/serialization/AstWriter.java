@@ -0,0 +1,282 @@
+package visitors.serialization;
+
+import static visitors.serialization.Tag.*;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import parser.ast.*;
+import visitors.Visitor;
+
+/*
+ * writes an AST in a compact binary format, read back by AstReader; integers
+ * are written as variable-length quantities and each identifier is written
+ * by name only at its first occurrence, later ones refer to it by number
+ */
+
+public class AstWriter implements Visitor<Void> {
+	public static final int FORMAT = Tag.fingerprint(); // identifies the tags of the format
+
+	private final DataOutputStream out;
+	private final Map<Ident, Integer> idents = new HashMap<>();
+
+	public AstWriter(DataOutputStream out) {
+		this.out = out;
+	}
+
+	public void write(Prog prog) throws IOException {
+		try {
+			prog.accept(this);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/*** encoding of the values ***/
+
+	private void writeTag(Tag tag) {
+		writeNat(tag.ordinal());
+	}
+
+	// unsigned LEB128
+	private void writeNat(int n) {
+		try {
+			while ((n & ~0x7F) != 0) {
+				out.writeByte(n & 0x7F | 0x80);
+				n >>>= 7;
+			}
+			out.writeByte(n);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// zig-zag encoding, so that small negative numbers are short as well
+	private void writeInt(int n) {
+		writeNat(n << 1 ^ n >> 31);
+	}
+
+	// strings are not limited to the 64K bytes of writeUTF
+	private void writeString(String s) {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		writeNat(bytes.length);
+		try {
+			out.write(bytes);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void binary(Tag tag, Exp left, Exp right) {
+		writeTag(tag);
+		left.accept(this);
+		right.accept(this);
+	}
+
+	private void unary(Tag tag, AST child) {
+		writeTag(tag);
+		child.accept(this);
+	}
+
+	/*** programs and statements ***/
+
+	@Override
+	public Void visitProg(StmtSeq stmtSeq) {
+		unary(PROG, stmtSeq);
+		return null;
+	}
+
+	@Override
+	public Void visitStmtSeq(List<Stmt> stmts) {
+		writeTag(STMT_SEQ);
+		writeNat(stmts.size());
+		for (Stmt stmt : stmts)
+			stmt.accept(this);
+		return null;
+	}
+
+	@Override
+	public Void visitAssignStmt(Ident ident, Exp exp) {
+		binary(ASSIGN, ident, exp);
+		return null;
+	}
+
+	@Override
+	public Void visitDecStmt(Ident ident, Exp exp) {
+		binary(DEC, ident, exp);
+		return null;
+	}
+
+	@Override
+	public Void visitPrintStmt(Exp exp) {
+		unary(PRINT, exp);
+		return null;
+	}
+
+	@Override
+	public Void visitIfStmt(Exp exp, Block thenBlock, Block elseBlock) {
+		writeTag(elseBlock == null ? IF : IF_ELSE);
+		exp.accept(this);
+		thenBlock.accept(this);
+		if (elseBlock != null)
+			elseBlock.accept(this);
+		return null;
+	}
+
+	@Override
+	public Void visitBlock(StmtSeq stmtSeq) {
+		unary(BLOCK, stmtSeq);
+		return null;
+	}
+
+	@Override
+	public Void visitWhileStmt(Exp exp, Block whileBlock) {
+		writeTag(WHILE);
+		exp.accept(this);
+		whileBlock.accept(this);
+		return null;
+	}
+
+	/*** atoms ***/
+
+	@Override
+	public Void visitIntLiteral(int value) {
+		writeTag(INT);
+		writeInt(value);
+		return null;
+	}
+
+	@Override
+	public Void visitBoolLiteral(boolean value) {
+		writeTag(BOOL);
+		writeNat(value ? 1 : 0);
+		return null;
+	}
+
+	@Override
+	public Void visitStringLiteral(String value) {
+		writeTag(STRING);
+		writeString(value);
+		return null;
+	}
+
+	@Override
+	public Void visitIdent(Ident id) {
+		Integer index = idents.get(id);
+		if (index != null) {
+			writeTag(IDENT);
+			writeNat(index);
+		} else {
+			idents.put(id, idents.size());
+			writeTag(NEW_IDENT);
+			writeString(id.getName());
+		}
+		return null;
+	}
+
+	@Override
+	public Void visitExpSeq(List<Exp> exps) {
+		writeTag(EXP_SEQ);
+		writeNat(exps.size());
+		for (Exp exp : exps)
+			exp.accept(this);
+		return null;
+	}
+
+	@Override
+	public Void visitSetLiteral(ExpSeq expSeq) {
+		unary(SET, expSeq);
+		return null;
+	}
+
+	@Override
+	public Void visitPairLit(Exp left, Exp right) {
+		binary(PAIR, left, right);
+		return null;
+	}
+
+	/*** operators ***/
+
+	@Override
+	public Void visitAdd(Exp left, Exp right) {
+		binary(ADD, left, right);
+		return null;
+	}
+
+	@Override
+	public Void visitMul(Exp left, Exp right) {
+		binary(MUL, left, right);
+		return null;
+	}
+
+	@Override
+	public Void visitAnd(Exp left, Exp right) {
+		binary(AND, left, right);
+		return null;
+	}
+
+	@Override
+	public Void visitEq(Exp left, Exp right) {
+		binary(EQ, left, right);
+		return null;
+	}
+
+	@Override
+	public Void visitConcat(Exp left, Exp right) {
+		binary(CONCAT, left, right);
+		return null;
+	}
+
+	@Override
+	public Void visitIn(Exp left, Exp right) {
+		binary(IN, left, right);
+		return null;
+	}
+
+	@Override
+	public Void visitUnion(Exp left, Exp right) {
+		binary(UNION, left, right);
+		return null;
+	}
+
+	@Override
+	public Void visitIntersect(Exp left, Exp right) {
+		binary(INTERSECT, left, right);
+		return null;
+	}
+
+	@Override
+	public Void visitSign(Exp exp) {
+		unary(SIGN, exp);
+		return null;
+	}
+
+	@Override
+	public Void visitNot(Exp exp) {
+		unary(NOT, exp);
+		return null;
+	}
+
+	@Override
+	public Void visitFst(Exp exp) {
+		unary(FST, exp);
+		return null;
+	}
+
+	@Override
+	public Void visitSnd(Exp exp) {
+		unary(SND, exp);
+		return null;
+	}
+
+	@Override
+	public Void visitCardinality(Exp exp) {
+		unary(CARDINALITY, exp);
+		return null;
+	}
+}
@@ -0,0 +1,27 @@
+package visitors.serialization;
+
+import java.util.Arrays;
+
+/*
+ * kinds of the nodes in the binary format of the AST; each node is written
+ * as the ordinal of its tag followed by its children in the order of the
+ * visitor
+ */
+
+enum Tag {
+	PROG, STMT_SEQ, ASSIGN, DEC, PRINT, IF, IF_ELSE, BLOCK, WHILE, // statements
+	INT, BOOL, STRING, IDENT, NEW_IDENT, EXP_SEQ, SET, PAIR, // atoms
+	ADD, MUL, AND, EQ, CONCAT, IN, UNION, INTERSECT, // binary operators
+	SIGN, NOT, FST, SND, CARDINALITY; // unary operators
+
+	private static final Tag[] tags = values();
+
+	static Tag of(int ordinal) {
+		return ordinal >= 0 && ordinal < tags.length ? tags[ordinal] : null;
+	}
+
+	// changes whenever a tag is added, removed or moved
+	static int fingerprint() {
+		return Arrays.toString(tags).hashCode();
+	}
+}
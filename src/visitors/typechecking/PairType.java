@@ -2,16 +2,38 @@ package visitors.typechecking;
 
 import static java.util.Objects.requireNonNull;
 
-public class PairType implements Type {
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/*
+ * pair types are hash-consed: there is one instance for each pair of
+ * component types, so that equal types are the same object and are compared
+ * by reference
+ */
+
+public final class PairType implements Type {
+	// instances indexed by the first and then by the second component
+	private static final Map<Type, Map<Type, PairType>> instances = new IdentityHashMap<>();
 
 	private final Type fstType;
 	private final Type sndType;
 
 	public static final String TYPE_NAME = "PAIR";
 
-	public PairType(Type fstType, Type sndType) {
-		this.fstType = requireNonNull(fstType);
-		this.sndType = requireNonNull(sndType);
+	private PairType(Type fstType, Type sndType) {
+		this.fstType = fstType;
+		this.sndType = sndType;
+	}
+
+	/* component types are interned as well, hence they are looked up by identity */
+	public static synchronized PairType of(Type fstType, Type sndType) {
+		Map<Type, PairType> bySnd = instances.get(requireNonNull(fstType));
+		if (bySnd == null)
+			instances.put(fstType, bySnd = new IdentityHashMap<>());
+		PairType type = bySnd.get(requireNonNull(sndType));
+		if (type == null)
+			bySnd.put(sndType, type = new PairType(fstType, sndType));
+		return type;
 	}
 
 	public Type getFstType() {
@@ -22,21 +44,6 @@ public class PairType implements Type {
 		return sndType;
 	}
 
-	@Override
-	public final boolean equals(Object obj) {
-		if (this == obj)
-			return true;
-		if (!(obj instanceof PairType))
-			return false;
-		PairType pt = (PairType) obj;
-		return fstType.equals(pt.fstType) && sndType.equals(pt.sndType);
-	}
-
-	@Override
-	public int hashCode() {
-		return fstType.hashCode() + 31 * sndType.hashCode();
-	}
-
 	@Override
 	public String toString() {
 		return "(" + fstType + "*" + sndType + ")";
@@ -2,33 +2,36 @@ package visitors.typechecking;
 
 import static java.util.Objects.requireNonNull;
 
-public class SetType implements Type {
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/*
+ * set types are hash-consed: there is one instance for each element type, so
+ * that equal types are the same object and are compared by reference
+ */
+
+public final class SetType implements Type {
+	private static final Map<Type, SetType> instances = new IdentityHashMap<>();
+
 	private final Type elemType;
 	
 	public static final String TYPE_NAME="SET";
 	
-	public SetType(Type elemType) {
-		this.elemType=requireNonNull(elemType);
+	private SetType(Type elemType) {
+		this.elemType=elemType;
+	}
+
+	/* element types are interned as well, hence they are looked up by identity */
+	public static synchronized SetType of(Type elemType) {
+		SetType type = instances.get(requireNonNull(elemType));
+		if (type == null)
+			instances.put(elemType, type = new SetType(elemType));
+		return type;
 	}
 	
 	public Type getElemType() {
 		return elemType;
 	}
-	
-	@Override
-	public final boolean equals(Object obj) {
-		if (this == obj)
-			return true;
-		if (!(obj instanceof SetType))
-			return false;
-		SetType st = (SetType) obj;
-		return elemType.equals(st.elemType);
-	}
-	
-	@Override
-	public int hashCode() {
-		return 31 * elemType.hashCode();
-	}
 
 	@Override
 	public String toString() {
@@ -1,43 +1,18 @@
 package visitors.typechecking;
 
-import com.sun.jdi.Value;
+/* the type of strings has no components, so there is just one instance, as for PrimtType */
 
-import visitors.evaluation.IntValue;
-
-public class StringType implements Type {
-private final String string;
+public final class StringType implements Type {
 	
 	public static final String TYPE_NAME="STRING";
 	
-	public StringType() {
-		this.string="";
-	}
-	
-	public StringType(String string) {
-		this.string=string;
-	}
-	
-	public Type getType() {
-		return this;
-	}
+	public static final StringType STRING=new StringType();
 	
-	@Override
-	public int hashCode() {
-		return 31 * string.hashCode();
+	private StringType() {
 	}
 
 	@Override
 	public String toString() {
 		return TYPE_NAME;
 	}
-	
-	@Override
-	public final boolean equals(Object obj) {
-		if (this == obj)
-			return true;
-		if (!(obj instanceof StringType))
-			return false;
-		else return true;
-		
-	}
 }
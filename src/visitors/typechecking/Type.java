@@ -1,9 +1,11 @@
 package visitors.typechecking;
 
+/* types are interned, so that they can be compared by reference */
+
 public interface Type {
 	
 	default Type checkEqual(Type found) throws TypecheckerException {
-		if (!equals(found))
+		if (this != found)
 			throw new TypecheckerException(found.toString(), toString());
 		return this;
 	}
@@ -1,6 +1,13 @@
 package visitors.typechecking;
 
 import static visitors.typechecking.PrimtType.*;
+import static visitors.typechecking.StringType.STRING;
+
+import static java.util.Collections.unmodifiableMap;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 import environments.EnvironmentException;
 import environments.GenEnvironment;
@@ -11,9 +18,34 @@ public class TypeCheck implements Visitor<Type> {
 
 	private final GenEnvironment<Type> env = new GenEnvironment<>();
 
+	/*
+	 * type of each checked expression, keyed by node identity; identifiers are
+	 * recorded only once resolved, since the parser shares one node among all
+	 * the occurrences of a name, which may have different types in different
+	 * scopes, while visitors.resolution.Resolver gives each occurrence its own
+	 */
+	private final Map<Exp, Type> types = new IdentityHashMap<>();
+
+	/* the types of the expressions of the last checked program */
+	public Map<Exp, Type> getTypes() {
+		return unmodifiableMap(types);
+	}
+
+	/* computes the type of exp at most once */
+	private Type check(Exp exp) {
+		if (exp instanceof Ident && !(exp instanceof ResolvedIdent))
+			return exp.accept(this);
+		Type type = types.get(exp);
+		if (type == null) {
+			type = exp.accept(this);
+			types.put(exp, type);
+		}
+		return type;
+	}
+
 	private void checkBinOp(Exp left, Exp right, Type type) {
-		type.checkEqual(left.accept(this));
-		type.checkEqual(right.accept(this));
+		type.checkEqual(check(left));
+		type.checkEqual(check(right));
 	}
 
 	// static semantics for programs; no value returned by the visitor
@@ -33,25 +65,25 @@ public class TypeCheck implements Visitor<Type> {
 	@Override
 	public Type visitAssignStmt(Ident ident, Exp exp) {
 		Type found = env.lookup(ident);
-		found.checkEqual(exp.accept(this));
+		found.checkEqual(check(exp));
 		return null;
 	}
 
 	@Override
 	public Type visitPrintStmt(Exp exp) {
-		exp.accept(this);
+		check(exp);
 		return null;
 	}
 
 	@Override
 	public Type visitDecStmt(Ident ident, Exp exp) {
-		env.dec(ident, exp.accept(this));
+		env.dec(ident, check(exp));
 		return null;
 	}
 
 	@Override
 	public Type visitIfStmt(Exp exp, Block thenBlock, Block elseBlock) {
-		BOOL.checkEqual(exp.accept(this));
+		BOOL.checkEqual(check(exp));
 		thenBlock.accept(this);
 		if (elseBlock == null)
 			return null;
@@ -71,15 +103,9 @@ public class TypeCheck implements Visitor<Type> {
 	// no value returned by the visitor
 
 	@Override
-	public Type visitSingleStmt(Stmt stmt) {
-		stmt.accept(this);
-		return null;
-	}
-
-	@Override
-	public Type visitMoreStmt(Stmt first, StmtSeq rest) {
-		first.accept(this);
-		rest.accept(this);
+	public Type visitStmtSeq(List<Stmt> stmts) {
+		for (Stmt stmt : stmts)
+			stmt.accept(this);
 		return null;
 	}
 
@@ -104,7 +130,7 @@ public class TypeCheck implements Visitor<Type> {
 
 	@Override
 	public Type visitSign(Exp exp) {
-		return INT.checkEqual(exp.accept(this));
+		return INT.checkEqual(check(exp));
 	}
 
 	@Override
@@ -114,7 +140,7 @@ public class TypeCheck implements Visitor<Type> {
 
 	@Override
 	public Type visitNot(Exp exp) {
-		return BOOL.checkEqual(exp.accept(this));
+		return BOOL.checkEqual(check(exp));
 	}
 
 	@Override
@@ -130,89 +156,92 @@ public class TypeCheck implements Visitor<Type> {
 
 	@Override
 	public Type visitEq(Exp left, Exp right) {
-		left.accept(this).checkEqual(right.accept(this));
+		check(left).checkEqual(check(right));
 		return BOOL;
 	}
 
 	@Override
 	public Type visitPairLit(Exp left, Exp right) {
-		return new PairType(left.accept(this), right.accept(this));
+		return PairType.of(check(left), check(right));
 	}
 
 	@Override
 	public Type visitFst(Exp exp) {
-		return exp.accept(this).getFstPairType();
+		return check(exp).getFstPairType();
 	}
 
 	@Override
 	public Type visitSnd(Exp exp) {
-		return exp.accept(this).getSndPairType();
+		return check(exp).getSndPairType();
 	}
 	
 	//L++
 	@Override
 	public Type visitConcat(Exp left,Exp right) {
-		checkBinOp(left, right,left.accept(this));
-		return new StringType();
+		check(left).checkEqual(check(right));
+		return STRING;
 	}
 
 	
 	@Override
 	public Type visitStringLiteral(String value) {
-		return new StringType(value);
+		return STRING;
 	}
 	
 	@Override
 	public Type visitWhileStmt(Exp exp, Block whileBlock) {
-		BOOL.checkEqual(exp.accept(this));
+		BOOL.checkEqual(check(exp));
 		whileBlock.accept(this);
 		return null;
 	}
 
+	// elements are checked from the last one, as the former right-nested
+	// sequences did, so that errors are reported in the same way
 	@Override
-	public Type visitMoreExp(Exp first, ExpSeq rest) {
-		return first.accept(this).checkEqual(rest.accept(this));
-	}
-
-	@Override
-	public Type visitSingleExp(Exp single) {
-		return single.accept(this);
+	public Type visitExpSeq(List<Exp> exps) {
+		int last = exps.size() - 1;
+		Type type = check(exps.get(last));
+		for (int i = last - 1; i >= 0; i--)
+			type = check(exps.get(i)).checkEqual(type);
+		return type;
 	}
 
 	@Override
 	public Type visitSetLiteral(ExpSeq expSeq) {
-		return new SetType(expSeq.accept(this));
+		return SetType.of(expSeq.accept(this));
 	}
 	
 	@Override
 	public Type visitIn(Exp element,Exp set) {
 		//BAM!
-		Type elemType = element.accept(this);
-		Type setElemType = new SetType(elemType);
-		setElemType.checkEqual(set.accept(this));
+		Type elemType = check(element);
+		Type setElemType = SetType.of(elemType);
+		setElemType.checkEqual(check(set));
 		return BOOL;
 	}
 	
 	@Override
 	public Type visitCardinality(Exp exp) {
 		//COUNTABLE = SET OR STRING
-		exp.accept(this).checkIsCountable();
+		check(exp).checkIsCountable();
 		return INT;
 	}
 
 	@Override
 	public Type visitUnion(Exp left, Exp right) {
-		left.accept(this).checkIsSetType();
-		right.accept(this).checkIsSetType();
-		checkBinOp(left, right,left.accept(this));
-		return left.accept(this);
+		Type leftType = check(left);
+		leftType.checkIsSetType();
+		Type rightType = check(right);
+		rightType.checkIsSetType();
+		return leftType.checkEqual(rightType);
 	}
 
 	@Override
 	public Type visitIntersect(Exp left, Exp right) {
-		left.accept(this).checkIsSetType();
-		right.accept(this).checkIsSetType();
-		checkBinOp(left, right,left.accept(this));
-		return left.accept(this);
+		Type leftType = check(left);
+		leftType.checkIsSetType();
+		Type rightType = check(right);
+		rightType.checkIsSetType();
+		return leftType.checkEqual(rightType);
 	}
 }
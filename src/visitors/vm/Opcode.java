@@ -0,0 +1,50 @@
+package visitors.vm;
+
+/*
+ * instruction set of the register machine run by VmCode; each instruction
+ * is an opcode followed by its operands in the code array: d is the
+ * destination register, a, b, e and s are source registers, k an immediate
+ * int, t the index in the code array of a jump target
+ */
+
+final class Opcode {
+	static final int
+	// moves and arithmetic
+	MOVE = 0, // d a
+	ADD = 1, // d a b
+	ADDI = 2, // d a k: r[d] = r[a] + k, fused add of a literal
+	MUL = 3, // d a b
+	SIGN = 4, // d a
+	NOT = 5, // d a
+	EQ = 6, // d a b
+	CONCAT = 7, // d a b
+	// pairs and sets
+	PAIR = 8, // d a b
+	FST = 9, // d a
+	SND = 10, // d a
+	NEW_SET = 11, // d
+	SET_ADD = 12, // d a: adds r[a] to the set being built in r[d]
+	UNION = 13, // d a b
+	INTERSECT = 14, // d a b
+	CARD = 15, // d a
+	IN = 16, // d e s
+	// statements and jumps
+	PRINT = 17, // a
+	JUMP = 18, // t
+	JUMP_FALSE = 19, // a t
+	JUMP_TRUE = 20, // a t
+	JUMP_EMPTY = 21, // s t: jumps if r[s] is the empty set
+	JUMP_NE = 22, // a b t: fused jump on !(a == b)
+	JUMP_EQ = 23, // a b t: fused jump on a == b
+	JUMP_NOT_IN = 24, // e s t: fused jump on !(e in s)
+	JUMP_IN = 25, // e s t: fused jump on e in s
+	// checks of the left operand, before the right one is evaluated
+	CHECK_INT = 26, // a
+	CHECK_STRING = 27, // a
+	CHECK_SET = 28, // a
+	UNDECLARED = 29, // k: throws the error of the k-th undeclared name
+	HALT = 30;
+
+	private Opcode() {
+	}
+}
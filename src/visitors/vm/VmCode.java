@@ -0,0 +1,174 @@
+package visitors.vm;
+
+import static visitors.vm.Opcode.*;
+
+import java.io.PrintWriter;
+
+import environments.EnvironmentException;
+import visitors.compilation.Code;
+import visitors.evaluation.*;
+
+/*
+ * program compiled by VmCompiler, run by a dispatch loop over its code; the
+ * registers hold the variables and the temporary values, the last ones are
+ * preloaded with the literals of the program, which are immutable
+ */
+
+public class VmCode extends Code {
+	private final int[] code;
+	private final Value[] constants;
+	private final int registers; // index of the first constant
+	private final String[] undeclared; // names of the undeclared variables
+	private final PrintWriter printWriter;
+
+	VmCode(int[] code, Value[] constants, int registers, String[] undeclared, PrintWriter printWriter) {
+		this.code = code;
+		this.constants = constants;
+		this.registers = registers;
+		this.undeclared = undeclared;
+		this.printWriter = printWriter;
+	}
+
+	@Override
+	public Value run() {
+		try {
+			execute();
+		} catch (EnvironmentException e) { // undefined variable
+			throw new EvaluatorException(e);
+		}
+		return null;
+	}
+
+	// is elem in set; the lookup by hash finds what the comparisons of Eval find
+	private static boolean in(Value elem, SetValue set) {
+		return set.contains(elem);
+	}
+
+	private void execute() {
+		final int[] code = this.code;
+		final Value[] r = new Value[registers + constants.length];
+		System.arraycopy(constants, 0, r, registers, constants.length);
+		int pc = 0;
+		while (true) {
+			switch (code[pc]) {
+			case MOVE:
+				r[code[pc + 1]] = r[code[pc + 2]];
+				pc += 3;
+				break;
+			case ADD:
+				r[code[pc + 1]] = IntValue.of(r[code[pc + 2]].asInt() + r[code[pc + 3]].asInt());
+				pc += 4;
+				break;
+			case ADDI:
+				r[code[pc + 1]] = IntValue.of(r[code[pc + 2]].asInt() + code[pc + 3]);
+				pc += 4;
+				break;
+			case MUL:
+				r[code[pc + 1]] = IntValue.of(r[code[pc + 2]].asInt() * r[code[pc + 3]].asInt());
+				pc += 4;
+				break;
+			case SIGN:
+				r[code[pc + 1]] = IntValue.of(-r[code[pc + 2]].asInt());
+				pc += 3;
+				break;
+			case NOT:
+				r[code[pc + 1]] = BoolValue.of(!r[code[pc + 2]].asBool());
+				pc += 3;
+				break;
+			case EQ:
+				r[code[pc + 1]] = BoolValue.of(r[code[pc + 2]].equals(r[code[pc + 3]]));
+				pc += 4;
+				break;
+			case CONCAT:
+				r[code[pc + 1]] = r[code[pc + 2]].asStringValue().concat(r[code[pc + 3]].asStringValue());
+				pc += 4;
+				break;
+			case PAIR:
+				r[code[pc + 1]] = new PairValue(r[code[pc + 2]], r[code[pc + 3]]);
+				pc += 4;
+				break;
+			case FST:
+				r[code[pc + 1]] = r[code[pc + 2]].asPair().getFstVal();
+				pc += 3;
+				break;
+			case SND:
+				r[code[pc + 1]] = r[code[pc + 2]].asPair().getSndVal();
+				pc += 3;
+				break;
+			case NEW_SET:
+				r[code[pc + 1]] = new SetValue();
+				pc += 2;
+				break;
+			case SET_ADD:
+				((SetValue) r[code[pc + 1]]).add(r[code[pc + 2]]);
+				pc += 3;
+				break;
+			case UNION:
+				r[code[pc + 1]] = new SetValue(r[code[pc + 2]].asSet()).add(r[code[pc + 3]].asSet());
+				pc += 4;
+				break;
+			case INTERSECT:
+				r[code[pc + 1]] = new SetValue(r[code[pc + 2]].asSet()).intersect(r[code[pc + 3]].asSet());
+				pc += 4;
+				break;
+			case CARD: {
+				Value value = r[code[pc + 2]];
+				r[code[pc + 1]] = IntValue.of(
+						value instanceof StringValue ? ((StringValue) value).length() : value.asSet().dim());
+				pc += 3;
+				break;
+			}
+			case IN:
+				r[code[pc + 1]] = BoolValue.of(in(r[code[pc + 2]], r[code[pc + 3]].asSet()));
+				pc += 4;
+				break;
+			case PRINT:
+				printWriter.println(r[code[pc + 1]]);
+				pc += 2;
+				break;
+			case JUMP:
+				pc = code[pc + 1];
+				break;
+			case JUMP_FALSE:
+				pc = r[code[pc + 1]].asBool() ? pc + 3 : code[pc + 2];
+				break;
+			case JUMP_TRUE:
+				pc = r[code[pc + 1]].asBool() ? code[pc + 2] : pc + 3;
+				break;
+			case JUMP_EMPTY:
+				pc = r[code[pc + 1]].asSet().dim() == 0 ? code[pc + 2] : pc + 3;
+				break;
+			case JUMP_NE:
+				pc = r[code[pc + 1]].equals(r[code[pc + 2]]) ? pc + 4 : code[pc + 3];
+				break;
+			case JUMP_EQ:
+				pc = r[code[pc + 1]].equals(r[code[pc + 2]]) ? code[pc + 3] : pc + 4;
+				break;
+			case JUMP_NOT_IN:
+				pc = in(r[code[pc + 1]], r[code[pc + 2]].asSet()) ? pc + 4 : code[pc + 3];
+				break;
+			case JUMP_IN:
+				pc = in(r[code[pc + 1]], r[code[pc + 2]].asSet()) ? code[pc + 3] : pc + 4;
+				break;
+			case CHECK_INT:
+				r[code[pc + 1]].asInt();
+				pc += 2;
+				break;
+			case CHECK_STRING:
+				r[code[pc + 1]].asStringValue();
+				pc += 2;
+				break;
+			case CHECK_SET:
+				r[code[pc + 1]].asSet();
+				pc += 2;
+				break;
+			case UNDECLARED:
+				throw new EnvironmentException("Undeclared variable " + undeclared[code[pc + 1]]);
+			case HALT:
+				return;
+			default:
+				throw new IllegalStateException("Invalid opcode " + code[pc]);
+			}
+		}
+	}
+}
@@ -0,0 +1,546 @@
+package visitors.vm;
+
+import static java.util.Objects.requireNonNull;
+import static visitors.vm.Opcode.*;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import parser.ast.*;
+import visitors.Visitor;
+import visitors.evaluation.*;
+
+/*
+ * compiles programs resolved by visitors.resolution.Resolver into the code of
+ * the register machine VmCode, with the same dynamic semantics as
+ * visitors.evaluation.Eval, including the order in which operands are
+ * evaluated and errors are found
+ *
+ * each declaration has its own register, reused once its block is exited;
+ * variables and literals are operands of the instructions, with no moves;
+ * expressions return the register of their value, which is the target
+ * register requested by the caller, if any
+ */
+
+public class VmCompiler implements Visitor<Integer> {
+	private static final int NO_TARGET = Integer.MIN_VALUE;
+
+	private final PrintWriter printWriter;
+
+	private int[] code = new int[256];
+	private int length;
+
+	// registers of the variables in scope, by frame and slot
+	private final List<List<Integer>> frames = new ArrayList<>();
+	private int next; // first free register
+	private int registers; // registers used so far
+	private int target = NO_TARGET; // of the expression being compiled
+
+	/*
+	 * set while a condition is compiled: ==, in, ! and && consume it and
+	 * compile to fused jumps, taken when the condition is equal to whenTrue,
+	 * whose positions they add to jumps
+	 */
+	private List<Integer> jumps;
+	private boolean whenTrue;
+
+	// literals, numbered from 0 and encoded as registers by ~number until the
+	// number of registers is known
+	private final Map<Value, Integer> literals = new HashMap<>();
+	private final List<Value> constants = new ArrayList<>();
+	private final List<Integer> constantOperands = new ArrayList<>(); // positions in code
+
+	private final List<String> undeclared = new ArrayList<>();
+
+	public VmCompiler() {
+		printWriter = new PrintWriter(System.out, true);
+	}
+
+	public VmCompiler(PrintWriter printWriter) {
+		this.printWriter = requireNonNull(printWriter);
+	}
+
+	public VmCode compile(Prog prog) {
+		prog.accept(this);
+		emit(HALT);
+		for (int position : constantOperands)
+			code[position] = registers + ~code[position];
+		return new VmCode(Arrays.copyOf(code, length), constants.toArray(new Value[0]), registers,
+				undeclared.toArray(new String[0]), printWriter);
+	}
+
+	/*** code emission ***/
+
+	private void put(int word) {
+		if (length == code.length)
+			code = Arrays.copyOf(code, 2 * length);
+		code[length++] = word;
+	}
+
+	private void register(int register) {
+		if (register < 0)
+			constantOperands.add(length);
+		put(register);
+	}
+
+	private void emit(int opcode) {
+		put(opcode);
+	}
+
+	private void emit(int opcode, int a) {
+		put(opcode);
+		register(a);
+	}
+
+	private void emit(int opcode, int d, int a) {
+		put(opcode);
+		register(d);
+		register(a);
+	}
+
+	private void emit(int opcode, int d, int a, int b) {
+		put(opcode);
+		register(d);
+		register(a);
+		register(b);
+	}
+
+	// jumps with their registers; returns the position of the target, to be patched
+	private int jump(int opcode, int... operands) {
+		put(opcode);
+		for (int operand : operands)
+			register(operand);
+		put(-1);
+		return length - 1;
+	}
+
+	private void patch(int position) {
+		code[position] = length;
+	}
+
+	/*** registers ***/
+
+	private int temporary() {
+		if (next == registers)
+			registers++;
+		return next++;
+	}
+
+	// the register requested by the caller, otherwise a new temporary
+	private int destination(int target) {
+		return target != NO_TARGET ? target : temporary();
+	}
+
+	// returns the register of the value of exp, which is target if requested
+	private int compileExp(Exp exp, int target) {
+		int savedTarget = this.target;
+		List<Integer> savedJumps = jumps;
+		this.target = target;
+		jumps = null;
+		int register = exp.accept(this);
+		this.target = savedTarget;
+		jumps = savedJumps;
+		return register;
+	}
+
+	private int compileExp(Exp exp) {
+		return compileExp(exp, NO_TARGET);
+	}
+
+	// value already in a register, moved to target if requested
+	private int operand(int register) {
+		if (target == NO_TARGET || target == register)
+			return register;
+		emit(MOVE, target, register);
+		return target;
+	}
+
+	// literals are registers encoded by ~number
+	private int constant(Value value) {
+		Integer number = literals.get(value);
+		if (number == null) {
+			literals.put(value, number = constants.size());
+			constants.add(value);
+		}
+		return ~number;
+	}
+
+	private Value constantValue(int register) {
+		return register < 0 ? constants.get(~register) : null;
+	}
+
+	/*
+	 * expressions evaluated without executing any instruction, hence without
+	 * errors
+	 */
+	private static boolean isPure(Exp exp) {
+		if (exp instanceof PrimLiteral)
+			return true;
+		return exp instanceof ResolvedIdent && ((ResolvedIdent) exp).getDepth() != ResolvedIdent.UNDECLARED;
+	}
+
+	/*
+	 * compiles the operands of a binary operator; the left one is checked by
+	 * check, if any, before the right one is evaluated, as by Eval
+	 */
+	private int[] operands(Exp left, Exp right, int check) {
+		int l = compileExp(left);
+		if (check >= 0 && !isPure(right))
+			emit(check, l);
+		return new int[] { l, compileExp(right) };
+	}
+
+	private int binary(int opcode, Exp left, Exp right, int check) {
+		int t = target, mark = next;
+		int[] operands = operands(left, right, check);
+		next = mark;
+		int d = destination(t);
+		emit(opcode, d, operands[0], operands[1]);
+		return d;
+	}
+
+	private int unary(int opcode, Exp exp) {
+		int t = target, mark = next;
+		int a = compileExp(exp);
+		next = mark;
+		int d = destination(t);
+		emit(opcode, d, a);
+		return d;
+	}
+
+	/*** conditions ***/
+
+	// positions of the jumps taken if the value of exp is equal to whenTrue
+	private List<Integer> jumpIf(Exp exp, boolean whenTrue) {
+		int savedTarget = target, mark = next;
+		List<Integer> jumps = new ArrayList<>();
+		target = NO_TARGET;
+		this.jumps = jumps;
+		this.whenTrue = whenTrue;
+		int register = exp.accept(this);
+		if (this.jumps != null) { // not fused
+			this.jumps = null;
+			jumps.add(jump(whenTrue ? JUMP_TRUE : JUMP_FALSE, register));
+		}
+		target = savedTarget;
+		next = mark;
+		return jumps;
+	}
+
+	// the jumps of the condition being compiled, which is then compiled
+	private List<Integer> fuse() {
+		List<Integer> fused = jumps;
+		jumps = null;
+		return fused;
+	}
+
+	private void patch(List<Integer> positions) {
+		for (int position : positions)
+			patch(position);
+	}
+
+	/*** programs and statements ***/
+
+	@Override
+	public Integer visitProg(StmtSeq stmtSeq) {
+		frames.add(new ArrayList<>());
+		stmtSeq.accept(this);
+		return null;
+	}
+
+	@Override
+	public Integer visitStmtSeq(List<Stmt> stmts) {
+		for (Stmt stmt : stmts)
+			stmt.accept(this);
+		return null;
+	}
+
+	private int variable(Ident ident) {
+		ResolvedIdent resolved = (ResolvedIdent) ident;
+		return frames.get(frames.size() - 1 - resolved.getDepth()).get(resolved.getSlot());
+	}
+
+	private int undeclared(Ident ident) {
+		undeclared.add(ident.getName());
+		put(UNDECLARED);
+		put(undeclared.size() - 1);
+		return destination(target);
+	}
+
+	// the value is computed before the error is raised, as by Eval
+	@Override
+	public Integer visitAssignStmt(Ident ident, Exp exp) {
+		int mark = next;
+		if (((ResolvedIdent) ident).getDepth() == ResolvedIdent.UNDECLARED) {
+			compileExp(exp);
+			undeclared(ident);
+		} else
+			compileExp(exp, variable(ident));
+		next = mark;
+		return null;
+	}
+
+	// the variable is in scope only after its initialization
+	@Override
+	public Integer visitDecStmt(Ident ident, Exp exp) {
+		int register = temporary();
+		compileExp(exp, register);
+		next = register + 1;
+		List<Integer> frame = frames.get(frames.size() - 1);
+		int slot = ((ResolvedIdent) ident).getSlot();
+		while (frame.size() <= slot)
+			frame.add(null);
+		frame.set(slot, register);
+		return null;
+	}
+
+	@Override
+	public Integer visitPrintStmt(Exp exp) {
+		int mark = next;
+		emit(PRINT, compileExp(exp));
+		next = mark;
+		return null;
+	}
+
+	@Override
+	public Integer visitIfStmt(Exp exp, Block thenBlock, Block elseBlock) {
+		List<Integer> toElse = jumpIf(exp, false);
+		thenBlock.accept(this);
+		if (elseBlock == null) {
+			patch(toElse);
+			return null;
+		}
+		int toEnd = jump(JUMP);
+		patch(toElse);
+		elseBlock.accept(this);
+		patch(toEnd);
+		return null;
+	}
+
+	// the registers of the variables of a block are reused after it
+	@Override
+	public Integer visitBlock(StmtSeq stmtSeq) {
+		int mark = next;
+		frames.add(new ArrayList<>());
+		stmtSeq.accept(this);
+		frames.remove(frames.size() - 1);
+		next = mark;
+		return null;
+	}
+
+	@Override
+	public Integer visitWhileStmt(Exp exp, Block whileBlock) {
+		int start = length;
+		List<Integer> toEnd = jumpIf(exp, false);
+		whileBlock.accept(this);
+		put(JUMP);
+		put(start);
+		patch(toEnd);
+		return null;
+	}
+
+	/*** variables and literals ***/
+
+	@Override
+	public Integer visitIdent(Ident id) {
+		if (((ResolvedIdent) id).getDepth() == ResolvedIdent.UNDECLARED)
+			return undeclared(id);
+		return operand(variable(id));
+	}
+
+	@Override
+	public Integer visitIntLiteral(int value) {
+		return operand(constant(IntValue.of(value)));
+	}
+
+	@Override
+	public Integer visitBoolLiteral(boolean value) {
+		return operand(constant(BoolValue.of(value)));
+	}
+
+	@Override
+	public Integer visitStringLiteral(String value) {
+		return operand(constant(new StringValue(value)));
+	}
+
+	// the set is built in a temporary, since its elements may read target
+	@Override
+	public Integer visitSetLiteral(ExpSeq expSeq) {
+		int t = target;
+		int set = temporary();
+		emit(NEW_SET, set);
+		target = set;
+		expSeq.accept(this);
+		target = t;
+		if (t == NO_TARGET)
+			return set;
+		next = set;
+		emit(MOVE, t, set);
+		return t;
+	}
+
+	// elements are evaluated and added from the last one, as by Eval
+	@Override
+	public Integer visitExpSeq(List<Exp> exps) {
+		int set = target, mark = next;
+		for (int i = exps.size() - 1; i >= 0; i--) {
+			emit(SET_ADD, set, compileExp(exps.get(i)));
+			next = mark;
+		}
+		return set;
+	}
+
+	@Override
+	public Integer visitPairLit(Exp left, Exp right) {
+		return binary(PAIR, left, right, -1);
+	}
+
+	/*** operators ***/
+
+	// x + k and k + x are fused with the int literal k
+	@Override
+	public Integer visitAdd(Exp left, Exp right) {
+		int t = target, mark = next;
+		int[] operands = operands(left, right, CHECK_INT);
+		next = mark;
+		int d = destination(t);
+		Value k = constantValue(operands[1]);
+		int a = operands[0];
+		if (!(k instanceof IntValue)) {
+			k = constantValue(operands[0]);
+			a = operands[1];
+		}
+		if (k instanceof IntValue) {
+			put(ADDI);
+			register(d);
+			register(a);
+			put(k.asInt());
+		} else
+			emit(ADD, d, operands[0], operands[1]);
+		return d;
+	}
+
+	@Override
+	public Integer visitMul(Exp left, Exp right) {
+		return binary(MUL, left, right, CHECK_INT);
+	}
+
+	@Override
+	public Integer visitEq(Exp left, Exp right) {
+		if (jumps == null)
+			return binary(EQ, left, right, -1);
+		List<Integer> fused = fuse();
+		boolean when = whenTrue;
+		int[] operands = operands(left, right, -1);
+		fused.add(jump(when ? JUMP_EQ : JUMP_NE, operands[0], operands[1]));
+		return NO_TARGET;
+	}
+
+	@Override
+	public Integer visitConcat(Exp left, Exp right) {
+		return binary(CONCAT, left, right, CHECK_STRING);
+	}
+
+	@Override
+	public Integer visitUnion(Exp left, Exp right) {
+		return binary(UNION, left, right, CHECK_SET);
+	}
+
+	@Override
+	public Integer visitIntersect(Exp left, Exp right) {
+		return binary(INTERSECT, left, right, CHECK_SET);
+	}
+
+	// the opposite of an int literal is a literal too
+	@Override
+	public Integer visitSign(Exp exp) {
+		if (exp instanceof IntLiteral) {
+			int k = constantValue(compileExp(exp)).asInt();
+			return operand(constant(IntValue.of(-k)));
+		}
+		return unary(SIGN, exp);
+	}
+
+	@Override
+	public Integer visitNot(Exp exp) {
+		if (jumps == null)
+			return unary(NOT, exp);
+		fuse().addAll(jumpIf(exp, !whenTrue));
+		return NO_TARGET;
+	}
+
+	@Override
+	public Integer visitFst(Exp exp) {
+		return unary(FST, exp);
+	}
+
+	@Override
+	public Integer visitSnd(Exp exp) {
+		return unary(SND, exp);
+	}
+
+	@Override
+	public Integer visitCardinality(Exp exp) {
+		return unary(CARD, exp);
+	}
+
+	// the right operand is evaluated only if the left one is true, both must be booleans
+	@Override
+	public Integer visitAnd(Exp left, Exp right) {
+		if (jumps != null) {
+			List<Integer> fused = fuse();
+			if (!whenTrue) { // either operand is false
+				fused.addAll(jumpIf(left, false));
+				fused.addAll(jumpIf(right, false));
+			} else { // both are true
+				List<Integer> toEnd = jumpIf(left, false);
+				fused.addAll(jumpIf(right, true));
+				patch(toEnd);
+			}
+			return NO_TARGET;
+		}
+		int t = target;
+		List<Integer> toFalse = jumpIf(left, false);
+		toFalse.addAll(jumpIf(right, false));
+		int d = destination(t);
+		emit(MOVE, d, constant(BoolValue.TRUE));
+		int toEnd = jump(JUMP);
+		patch(toFalse);
+		emit(MOVE, d, constant(BoolValue.FALSE));
+		patch(toEnd);
+		return d;
+	}
+
+	/*
+	 * the set is evaluated first and the element only if the set is not empty,
+	 * as by Eval; elements without code can be read in any order
+	 */
+	@Override
+	public Integer visitIn(Exp element, Exp set) {
+		if (isPure(element)) {
+			if (jumps == null)
+				return binary(IN, element, set, -1);
+			List<Integer> fused = fuse();
+			boolean when = whenTrue;
+			int[] operands = operands(element, set, -1);
+			fused.add(jump(when ? JUMP_IN : JUMP_NOT_IN, operands[0], operands[1]));
+			return NO_TARGET;
+		}
+		int t = target, mark = next;
+		int s = compileExp(set);
+		int toFalse = jump(JUMP_EMPTY, s);
+		int e = compileExp(element);
+		next = mark;
+		int d = destination(t);
+		emit(IN, d, e, s);
+		int toEnd = jump(JUMP);
+		patch(toFalse);
+		emit(MOVE, d, constant(BoolValue.FALSE));
+		patch(toEnd);
+		return d;
+	}
+}
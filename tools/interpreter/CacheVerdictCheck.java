@@ -0,0 +1,50 @@
+package interpreter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import interpreter.AstCache.Verdict;
+
+//Check of the verdicts stored by Main in the AST cache: a program first run with -ntc is cached
+//UNCHECKED, and the next checked run must store OK, or ERROR if it has a static error
+//usage: CacheVerdictCheck; the cache is kept in a temporary home, the user's one is not touched
+public class CacheVerdictCheck {
+
+	static final String CORRECT = "let x=1; print x";
+	static final String WRONG = "let x=1; print x+\"a\"";
+
+	//the verdict cached for source after running Main with args
+	static Verdict run(Path source, String... args) throws IOException {
+		String[] mainArgs = new String[args.length + 2];
+		mainArgs[0] = "-i";
+		mainArgs[1] = source.toString();
+		System.arraycopy(args, 0, mainArgs, 2, args.length);
+		Main.main(mainArgs);
+		AstCache cache = new AstCache(source);
+		return cache.load() == null ? null : cache.verdict();
+	}
+
+	static boolean check(String name, Verdict found, Verdict expected) {
+		if (found == expected)
+			return true;
+		System.out.println(name + ": expected " + expected + ", found " + found);
+		return false;
+	}
+
+	public static void main(String[] args) throws IOException {
+		Path home = Files.createTempDirectory("lpp-home");
+		System.setProperty("user.home", home.toString());
+		boolean ok = true;
+		for (String program : new String[] { CORRECT, WRONG }) {
+			Path source = Files.write(home.resolve(program == CORRECT ? "correct.txt" : "wrong.txt"), program.getBytes());
+			Verdict checked = program == CORRECT ? Verdict.OK : Verdict.ERROR;
+			ok &= check(source + " after -ntc", run(source, "-ntc"), Verdict.UNCHECKED);
+			ok &= check(source + " after a checked run", run(source), checked);
+			ok &= check(source + " after a second checked run", run(source), checked);
+		}
+		System.out.println(ok ? "Verdicts upgraded" : "Verdicts not upgraded");
+		System.exit(ok ? 0 : 1);
+	}
+}
@@ -0,0 +1,76 @@
+package interpreter;
+
+import static parser.TokenType.*;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import parser.DfaTokenizer;
+import parser.StreamTokenizer;
+import parser.TokenType;
+import parser.Tokenizer;
+import parser.TokenizerException;
+
+//Differential check of DfaTokenizer against the regex based StreamTokenizer
+//usage: TokenizerDiff [file or directory ...], default is the test directory
+//a testing tool, kept in the tools source root so that it is not part of the interpreter
+public class TokenizerDiff {
+
+	/*
+	 * describes the whole token stream of the tokenizer, including the values of
+	 * the tokens and the error which ends the stream, if any
+	 */
+	static List<String> tokens(Tokenizer tokenizer) {
+		List<String> tokens = new ArrayList<>();
+		try {
+			TokenType type;
+			do {
+				type = tokenizer.next();
+				String token = type + "('" + tokenizer.tokenString() + "')";
+				if (type == NUM)
+					token += tokenizer.intValue();
+				else if (type == BOOL)
+					token += tokenizer.boolValue();
+				else if (type == STRINGLIT)
+					token += tokenizer.stringValue();
+				tokens.add(token);
+			} while (type != EOF);
+		} catch (TokenizerException | RuntimeException e) {
+			tokens.add(e.getClass().getSimpleName() + ": " + e.getMessage());
+		}
+		return tokens;
+	}
+
+	static boolean check(File file) throws FileNotFoundException {
+		if (file.isDirectory()) {
+			boolean ok = true;
+			for (File child : file.listFiles())
+				ok &= check(child);
+			return ok;
+		}
+		List<String> expected = tokens(new StreamTokenizer(new FileReader(file)));
+		List<String> found = tokens(new DfaTokenizer(new FileReader(file)));
+		if (expected.equals(found))
+			return true;
+		int i = 0;
+		while (i < expected.size() && i < found.size() && expected.get(i).equals(found.get(i)))
+			i++;
+		System.out.println(file + ": token " + i + ", expected "
+				+ (i < expected.size() ? expected.get(i) : "end of stream") + ", found "
+				+ (i < found.size() ? found.get(i) : "end of stream"));
+		return false;
+	}
+
+	public static void main(String[] args) throws FileNotFoundException {
+		if (args.length == 0)
+			args = new String[] { "test" };
+		boolean ok = true;
+		for (String name : args)
+			ok &= check(new File(name));
+		System.out.println(ok ? "No differences" : "Differences found");
+		System.exit(ok ? 0 : 1);
+	}
+}